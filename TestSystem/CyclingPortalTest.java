@@ -1,4 +1,6 @@
+import cycling.CheckpointStandings;
 import cycling.CheckpointType;
+import cycling.ClassificationExporter;
 import cycling.CyclingPortalImpl;
 import cycling.IDNotRecognisedException;
 import cycling.IllegalNameException;
@@ -8,14 +10,41 @@ import cycling.InvalidLocationException;
 import cycling.InvalidNameException;
 import cycling.InvalidStageStateException;
 import cycling.InvalidStageTypeException;
+import cycling.LeaderboardServer;
+import cycling.PointTables;
+import cycling.PortalRegistry;
+import cycling.RankingEvent;
+import cycling.RankingSort;
+import cycling.RiderHistory;
 import cycling.StageType;
+import cycling.TeamClassification;
+import cycling.StartList;
+import cycling.StringPool;
 import cycling.DuplicatedResultException;
+import cycling.GeneralClassification;
 import java.io.File;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 public class CyclingPortalTest {
@@ -54,6 +83,31 @@ public class CyclingPortalTest {
         testEraseCyclingPortal();
         testSaveCyclingPortal();
         testLoadCyclingPortal();
+        testRegisterRiderResultsAcrossMidnight();
+        testGetGeneralClassificationTimesAcrossMidnight();
+        testGetGeneralClassificationAfterStage();
+        testRecordCheckpointPassage();
+        testRecordCheckpointPassageConcurrently();
+        testGetStandingsAtCheckpoint();
+        testSealRace();
+        testImportCalendar();
+        testExportRace();
+        testImportStartList();
+        testGetGeneralClassificationAt();
+        testGetRaceStagesWithoutStartTime();
+        testGetRidersPointsInStageAcrossMidnight();
+        testGetStandingsAtCheckpointAcrossMidnight();
+        testLoadCyclingPortalOffHeap();
+        testGetRidersRankInStageConcurrently();
+        testAddRankingListener();
+        testLeaderboardServer();
+        testGetTeamClassification();
+        testRankingSortRadix();
+        testGetRidersRankInStageNanoseconds();
+        testGetRiderResultsAfterRemovals();
+        testRecomputeAll();
+        testPortalRegistryEviction();
+        testStringPoolSharing();
     }
 
     private static void testGetRaceIds() {
@@ -309,7 +363,8 @@ public class CyclingPortalTest {
             assert (exceptionThrown)
                     : "Expected IDNotRecognisedException for invalid ID";
 
-        } catch (IllegalNameException | InvalidNameException | IDNotRecognisedException | InvalidLengthException e) {
+        } catch (IllegalNameException | InvalidNameException | IDNotRecognisedException | InvalidLengthException
+                | InvalidStageStateException e) {
             assert (false)
                     : "Unexpected exception thrown" + e;
         }
@@ -1187,4 +1242,1330 @@ public class CyclingPortalTest {
                     : "Unexpected exception thrown" + e;
         }
     }
+
+    private static void testRegisterRiderResultsAcrossMidnight() {
+        System.out.println("The system is testing results of a stage crossing midnight...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a night stage without checkpoints
+            int teamId = portal.createTeam("NightTeam", "Riders of the night stage");
+            int riderId1 = portal.createRider(teamId, "NightRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "NightRiderTwo", 1991);
+            int raceId = portal.createRace("NightRace", "Race with a stage crossing midnight");
+            int stageId = portal.addStageToRace(raceId, "NightStage", "Stage crossing midnight", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 22, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId);
+
+            // both riders start before midnight and finish after it
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(23, 0), LocalTime.of(1, 0));
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(22, 0), LocalTime.of(1, 30));
+
+            // the elapsed times wrap around midnight
+            LocalTime[] results = portal.getRiderResultsInStage(stageId, riderId1);
+            assert results[2].equals(LocalTime.of(2, 0)) : "Expected an elapsed time of two hours";
+            assert portal.getRiderAdjustedElapsedTimeInStage(stageId, riderId2).equals(LocalTime.of(3, 30))
+                    : "Expected an adjusted elapsed time of three and a half hours";
+
+            // the rider with the shorter elapsed time ranks first
+            int[] ranks = portal.getRidersRankInStage(stageId);
+            assert ranks[0] == riderId1 && ranks[1] == riderId2 : "Expected the faster rider to rank first";
+            LocalTime[] times = portal.getRankedAdjustedElapsedTimesInStage(stageId);
+            assert times[0].equals(LocalTime.of(2, 0)) && times[1].equals(LocalTime.of(3, 30))
+                    : "Expected the ranked times to wrap around midnight";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetGeneralClassificationTimesAcrossMidnight() {
+        System.out.println("The system is testing the general classification of stages crossing midnight...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a race of two night stages
+            int teamId = portal.createTeam("OwlTeam", "Riders of the night race");
+            int riderId1 = portal.createRider(teamId, "OwlRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "OwlRiderTwo", 1991);
+            int raceId = portal.createRace("OwlRace", "Race of two stages crossing midnight");
+            int stageId1 = portal.addStageToRace(raceId, "OwlStageOne", "First night stage", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 23, 0), StageType.FLAT);
+            int stageId2 = portal.addStageToRace(raceId, "OwlStageTwo", "Second night stage", 50.0,
+                    LocalDateTime.of(2024, 6, 2, 23, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId1);
+            portal.concludeStagePreparation(stageId2);
+
+            // the second rider is faster in the first stage, slower overall
+            portal.registerRiderResultsInStage(stageId1, riderId1, LocalTime.of(23, 0), LocalTime.of(1, 0));
+            portal.registerRiderResultsInStage(stageId1, riderId2, LocalTime.of(23, 0), LocalTime.of(0, 50));
+            portal.registerRiderResultsInStage(stageId2, riderId1, LocalTime.of(23, 0), LocalTime.of(0, 30));
+            portal.registerRiderResultsInStage(stageId2, riderId2, LocalTime.of(23, 0), LocalTime.of(1, 0));
+
+            // the stage points follow the wrapped elapsed times
+            int[] points = portal.getRidersPointsInStage(stageId1);
+            assert points[0] == 50 && points[1] == 30 : "Expected the first stage winner to score the most";
+
+            // the general classification sums the wrapped elapsed times
+            int[] ranks = portal.getRidersGeneralClassificationRank(raceId);
+            assert ranks[0] == riderId1 && ranks[1] == riderId2 : "Expected riderId1 to lead the race";
+            LocalTime[] times = portal.getGeneralClassificationTimesInRace(raceId);
+            assert times[0].equals(LocalTime.of(3, 30)) && times[1].equals(LocalTime.of(3, 50))
+                    : "Expected the general classification times to add up across midnight";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetGeneralClassificationAfterStage() {
+        System.out.println("The system is testing the getGeneralClassificationAfterStage method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a race of two stages
+            int teamId = portal.createTeam("PrefixTeam", "Riders of the prefix race");
+            int riderId1 = portal.createRider(teamId, "PrefixRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "PrefixRiderTwo", 1991);
+            int raceId = portal.createRace("PrefixRace", "Race read after each stage");
+            int stageId1 = portal.addStageToRace(raceId, "PrefixStageOne", "First stage", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            int stageId2 = portal.addStageToRace(raceId, "PrefixStageTwo", "Second stage", 50.0,
+                    LocalDateTime.of(2024, 6, 2, 10, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId1);
+            portal.concludeStagePreparation(stageId2);
+
+            // riderId1 wins the first stage, riderId2 takes the lead in the second
+            portal.registerRiderResultsInStage(stageId1, riderId1, LocalTime.of(10, 0), LocalTime.of(12, 0));
+            portal.registerRiderResultsInStage(stageId1, riderId2, LocalTime.of(10, 0), LocalTime.of(12, 10));
+            portal.registerRiderResultsInStage(stageId2, riderId1, LocalTime.of(10, 0), LocalTime.of(13, 0));
+            portal.registerRiderResultsInStage(stageId2, riderId2, LocalTime.of(10, 0), LocalTime.of(12, 30));
+
+            // the classification after each stage only counts the stages up to it
+            GeneralClassification afterFirst = portal.getGeneralClassificationAfterStage(stageId1);
+            assert afterFirst.getRiderIds()[0] == riderId1 : "Expected riderId1 to lead after the first stage";
+            GeneralClassification afterSecond = portal.getGeneralClassificationAfterStage(stageId2);
+            assert afterSecond.getRiderIds()[0] == riderId2 : "Expected riderId2 to lead after the second stage";
+            assert Arrays.equals(afterSecond.getRiderIds(), portal.getRidersGeneralClassificationRank(raceId))
+                    : "Expected the classification after the last stage to match the race classification";
+
+            // a rider deleted from the first stage is no longer classified after either stage
+            portal.deleteRiderResultsInStage(stageId1, riderId2);
+            assert portal.getGeneralClassificationAfterStage(stageId1).getRiderIds().length == 1
+                    : "Expected one rider classified after the first stage";
+            assert Arrays.equals(portal.getGeneralClassificationAfterStage(stageId2).getRiderIds(),
+                    new int[] { riderId1 }) : "Expected only riderId1 classified after the second stage";
+
+            try {
+                // test getGeneralClassificationAfterStage with an invalid stage ID
+                portal.getGeneralClassificationAfterStage(-1);
+                assert false : "Expected an IDNotRecognisedException to be thrown";
+            } catch (IDNotRecognisedException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testRecordCheckpointPassage() {
+        System.out.println("The system is testing the recordCheckpointPassage method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a stage with one intermediate sprint
+            int teamId = portal.createTeam("LiveTeam", "Riders timed live");
+            int riderId = portal.createRider(teamId, "LiveRider", 1990);
+            int raceId = portal.createRace("LiveRace", "Race timed passage by passage");
+            int stageId = portal.addStageToRace(raceId, "LiveStage", "Stage timed live", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            portal.addIntermediateSprintToStage(stageId, 25.0);
+            portal.concludeStagePreparation(stageId);
+
+            // the start and the sprint only make a partial result
+            boolean completed = portal.recordCheckpointPassage(stageId, riderId, 0, LocalTime.of(10, 0));
+            assert !completed : "Expected the start not to complete the result";
+            completed = portal.recordCheckpointPassage(stageId, riderId, 1, LocalTime.of(11, 0));
+            assert !completed : "Expected the sprint not to complete the result";
+            LocalTime[] partial = portal.getRiderPartialResultsInStage(stageId, riderId);
+            assert partial.length == 3 && partial[1].equals(LocalTime.of(11, 0)) && partial[2] == null
+                    : "Expected the start and sprint times with no finish time";
+            assert portal.getRiderResultsInStage(stageId, riderId).length == 0
+                    : "Expected no full result before the finish";
+
+            try {
+                // test recordCheckpointPassage with a passage already recorded
+                portal.recordCheckpointPassage(stageId, riderId, 1, LocalTime.of(11, 1));
+                assert false : "Expected a DuplicatedResultException to be thrown";
+            } catch (DuplicatedResultException e) {
+                e.printStackTrace();
+            }
+            try {
+                // test recordCheckpointPassage with an index past the finish
+                portal.recordCheckpointPassage(stageId, riderId, 3, LocalTime.of(11, 1));
+                assert false : "Expected an InvalidCheckpointTimesException to be thrown";
+            } catch (InvalidCheckpointTimesException e) {
+                e.printStackTrace();
+            }
+
+            // the finish promotes the passages to a full result
+            completed = portal.recordCheckpointPassage(stageId, riderId, 2, LocalTime.of(12, 0));
+            assert completed : "Expected the finish to complete the result";
+            assert portal.getRiderResultsInStage(stageId, riderId)[3].equals(LocalTime.of(2, 0))
+                    : "Expected an elapsed time of two hours";
+            assert portal.getRiderPartialResultsInStage(stageId, riderId).length == 0
+                    : "Expected no partial result once the rider has finished";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | InvalidLocationException | InvalidStageTypeException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testRecordCheckpointPassageConcurrently() {
+        System.out.println("The system is testing recordCheckpointPassage from several threads...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a stage with one intermediate sprint and a hundred riders
+            int teamId = portal.createTeam("FeedTeam", "Riders timed by several feeds");
+            int[] riderIds = new int[100];
+            for (int i = 0; i < riderIds.length; i++) {
+                riderIds[i] = portal.createRider(teamId, "FeedRider" + i, 1990);
+            }
+            int raceId = portal.createRace("FeedRace", "Race timed by several feeds");
+            int stageId = portal.addStageToRace(raceId, "FeedStage", "Stage timed by several feeds", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            int sprintId = portal.addIntermediateSprintToStage(stageId, 25.0);
+            portal.concludeStagePreparation(stageId);
+
+            // four feeds record the passages of a quarter of the riders each
+            Thread[] feeds = new Thread[4];
+            boolean[] failed = new boolean[feeds.length];
+            for (int f = 0; f < feeds.length; f++) {
+                final int feed = f;
+                feeds[f] = new Thread(() -> {
+                    try {
+                        for (int i = feed; i < riderIds.length; i += feeds.length) {
+                            portal.recordCheckpointPassage(stageId, riderIds[i], 0, LocalTime.of(10, 0));
+                            portal.recordCheckpointPassage(stageId, riderIds[i], 1, LocalTime.of(11, 0).plusSeconds(i));
+                            portal.recordCheckpointPassage(stageId, riderIds[i], 2, LocalTime.of(12, 0).plusSeconds(i));
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        failed[feed] = true;
+                    }
+                });
+                feeds[f].start();
+            }
+
+            // the standings can be read while the passages arrive
+            while (portal.getStandingsAtCheckpoint(sprintId).getRiderIds().length < riderIds.length) {
+                Thread.yield();
+            }
+            for (Thread feed : feeds) {
+                feed.join();
+            }
+            for (boolean feedFailed : failed) {
+                assert !feedFailed : "Expected every passage to be recorded";
+            }
+            assert portal.getRidersRankInStage(stageId).length == riderIds.length
+                    : "Expected every rider to have a full result";
+            assert portal.getStandingsAtCheckpoint(sprintId).getRiderIds()[0] == riderIds[0]
+                    : "Expected the first rider to lead at the sprint";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidStageStateException | InvalidLengthException | InvalidLocationException
+                | InvalidStageTypeException | InterruptedException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetStandingsAtCheckpoint() {
+        System.out.println("The system is testing the getStandingsAtCheckpoint method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a stage with one intermediate sprint
+            int teamId = portal.createTeam("SprintTeam", "Riders of the sprint stage");
+            int riderId1 = portal.createRider(teamId, "SprintRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "SprintRiderTwo", 1991);
+            int raceId = portal.createRace("SprintRace", "Race with an intermediate sprint");
+            int stageId = portal.addStageToRace(raceId, "SprintStage", "Stage with a sprint", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            int sprintId = portal.addIntermediateSprintToStage(stageId, 25.0);
+            portal.concludeStagePreparation(stageId);
+
+            // riderId1 finishes, riderId2 only passes the sprint, ahead of riderId1
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(11, 0),
+                    LocalTime.of(12, 0));
+            portal.recordCheckpointPassage(stageId, riderId2, 0, LocalTime.of(10, 0));
+            portal.recordCheckpointPassage(stageId, riderId2, 1, LocalTime.of(10, 59));
+
+            // the standings include the rider still on the road
+            CheckpointStandings standings = portal.getStandingsAtCheckpoint(sprintId);
+            assert Arrays.equals(standings.getRiderIds(), new int[] { riderId2, riderId1 })
+                    : "Expected the riders in passing order";
+            assert standings.getPoints()[0] > standings.getPoints()[1]
+                    : "Expected the first rider at the sprint to score the most";
+
+            // the standings survive saving and loading into another portal
+            File tempFile = File.createTempFile("portal", ".tmp");
+            portal.saveCyclingPortal(tempFile.getAbsolutePath());
+            CyclingPortalImpl loaded = new CyclingPortalImpl();
+            loaded.loadCyclingPortal(tempFile.getAbsolutePath());
+            tempFile.delete();
+            assert Arrays.equals(loaded.getStandingsAtCheckpoint(sprintId).getRiderIds(),
+                    new int[] { riderId2, riderId1 }) : "Expected the same standings after loading";
+
+            // erasing the portal forgets the checkpoint
+            loaded.eraseCyclingPortal();
+            try {
+                loaded.getStandingsAtCheckpoint(sprintId);
+                assert false : "Expected an IDNotRecognisedException to be thrown";
+            } catch (IDNotRecognisedException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | InvalidLocationException | InvalidStageTypeException
+                | IOException | ClassNotFoundException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testSealRace() {
+        System.out.println("The system is testing the sealRace method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a concluded race of one stage
+            int teamId = portal.createTeam("SealTeam", "Riders of the sealed race");
+            int riderId1 = portal.createRider(teamId, "SealRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "SealRiderTwo", 1991);
+            int raceId = portal.createRace("SealRace", "Race sealed once concluded");
+            int stageId = portal.addStageToRace(raceId, "SealStage", "Stage of the sealed race", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId);
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(12, 0));
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 0), LocalTime.of(11, 50));
+            int[] ranking = portal.getRidersGeneralClassificationRank(raceId);
+
+            // seal the race into a segment file
+            File segment = File.createTempFile("race", ".seg");
+            assert !portal.isRaceSealed(raceId) : "Expected the race not to be sealed yet";
+            portal.sealRace(raceId, segment.getAbsolutePath());
+            assert portal.isRaceSealed(raceId) : "Expected the race to be sealed";
+
+            // the classifications are read back from the segment
+            assert Arrays.equals(portal.getRidersGeneralClassificationRank(raceId), ranking)
+                    : "Expected the same general classification after sealing";
+            assert portal.getRiderAdjustedElapsedTimeInStage(stageId, riderId2).equals(LocalTime.of(1, 50))
+                    : "Expected the stage results to be kept in the segment";
+
+            try {
+                // test registerRiderResultsInStage in a sealed race
+                portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(11, 0));
+                assert false : "Expected an InvalidStageStateException to be thrown";
+            } catch (InvalidStageStateException e) {
+                e.printStackTrace();
+            }
+            try {
+                // test deleteRiderResultsInStage in a sealed race
+                portal.deleteRiderResultsInStage(stageId, riderId1);
+                assert false : "Expected an InvalidStageStateException to be thrown";
+            } catch (InvalidStageStateException e) {
+                e.printStackTrace();
+            }
+            try {
+                // test removeStageById in a sealed race
+                portal.removeStageById(stageId);
+                assert false : "Expected an InvalidStageStateException to be thrown";
+            } catch (InvalidStageStateException e) {
+                e.printStackTrace();
+            }
+            assert Arrays.equals(portal.getRidersRankInStage(stageId), new int[] { riderId2, riderId1 })
+                    : "Expected the sealed results to be unchanged";
+
+            // the race stays sealed after saving and loading the portal
+            File tempFile = File.createTempFile("portal", ".tmp");
+            portal.saveCyclingPortal(tempFile.getAbsolutePath());
+            CyclingPortalImpl loaded = new CyclingPortalImpl();
+            loaded.loadCyclingPortal(tempFile.getAbsolutePath());
+            tempFile.delete();
+            assert loaded.isRaceSealed(raceId) : "Expected the race to stay sealed after loading";
+            assert Arrays.equals(loaded.getRidersGeneralClassificationRank(raceId), ranking)
+                    : "Expected the same general classification after loading";
+            segment.delete();
+
+            try {
+                // test sealRace with an invalid race ID
+                portal.sealRace(-1, segment.getAbsolutePath());
+                assert false : "Expected an IDNotRecognisedException to be thrown";
+            } catch (IDNotRecognisedException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | IOException | ClassNotFoundException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testImportCalendar() {
+        System.out.println("The system is testing the importCalendar method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // import two races, the first with two stages and their checkpoints
+            String calendar = "# races of the season\n"
+                    + "RACE,Spring,\"Ten days, two countries\"\n"
+                    + "STAGE,Prologue,Short prologue,8,2024-04-01T12:00,TT\n"
+                    + "STAGE,Hills,Hilly stage,150,2024-04-02T10:00,MEDIUM_MOUNTAIN\n"
+                    + "CLIMB,60,C2,5.5,4\n"
+                    + "SPRINT,100\n"
+                    + "\n"
+                    + "RACE,Autumn,One day race\n";
+            int[] raceIds = portal.importCalendar(new StringReader(calendar));
+            assert raceIds.length == 2 : "Expected two races to be imported";
+            assert portal.getNumberOfStages(raceIds[0]) == 2 && portal.getNumberOfStages(raceIds[1]) == 0
+                    : "Expected the stages to belong to the race above them";
+            int hillsId = portal.getRaceStages(raceIds[0])[1];
+            assert portal.getStageCheckpoints(hillsId).length == 2
+                    : "Expected the checkpoints to belong to the stage above them";
+            assert portal.viewRaceDetails(raceIds[0]).contains("Ten days, two countries")
+                    : "Expected the quoted description to keep its comma";
+
+            // a calendar repeating a race line is rejected as a whole
+            try {
+                portal.importCalendar(new StringReader("RACE,Winter,First\nRACE,Winter,Again\n"));
+                assert false : "Expected an IllegalNameException to be thrown";
+            } catch (IllegalNameException e) {
+                e.printStackTrace();
+            }
+
+            // a calendar repeating a stage line of a race is rejected as a whole
+            try {
+                portal.importCalendar(new StringReader("RACE,Summer,Summer race\n"
+                        + "STAGE,Flat,Flat stage,100,2024-07-01T10:00,FLAT\n"
+                        + "STAGE,Flat,Flat stage,100,2024-07-02T10:00,FLAT\n"));
+                assert false : "Expected an IllegalNameException to be thrown";
+            } catch (IllegalNameException e) {
+                e.printStackTrace();
+            }
+            assert portal.getRaceIds().length == 2 : "Expected rejected calendars to add no race";
+        } catch (IOException | IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidLengthException | InvalidLocationException | InvalidStageTypeException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testExportRace() {
+        System.out.println("The system is testing the exportRace and exportArchive methods...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a race of one time trial with two riders
+            int teamId = portal.createTeam("ExportTeam", "Riders of the exported race");
+            int riderId1 = portal.createRider(teamId, "ExportRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "ExportRiderTwo", 1991);
+            int raceId = portal.createRace("ExportRace", "Race exported as CSV and NDJSON");
+            int stageId = portal.addStageToRace(raceId, "ExportStage", "Exported time trial", 20.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.TT);
+            portal.concludeStagePreparation(stageId);
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(10, 30));
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 1),
+                    LocalTime.of(10, 30, 0, 500_000_000));
+            portal.createRace("EmptyRace", "Race without stages");
+
+            // the CSV export has a header, then the stage rows and the general classification rows
+            StringWriter csv = new StringWriter();
+            portal.exportRace(raceId, csv, ClassificationExporter.Format.CSV);
+            String[] lines = csv.toString().split("\n");
+            assert lines.length == 5 : "Expected a header and four rows";
+            assert lines[0].equals("record,raceId,stageId,position,riderId,elapsedMs,adjustedMs,points,mountainPoints")
+                    : "Expected the header line first";
+            assert lines[1].startsWith("stage," + raceId + "," + stageId + ",1," + riderId2 + ",1740500,1740500,")
+                    : "Expected the stage winner with elapsed times in milliseconds";
+            assert lines[3].startsWith("gc," + raceId + ",,1," + riderId2 + ",")
+                    : "Expected the general classification rows without a stage ID";
+
+            // the NDJSON export written to a channel has one object per row and no header
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            portal.exportRace(raceId, Channels.newChannel(bytes), ClassificationExporter.Format.NDJSON);
+            String[] objects = bytes.toString(StandardCharsets.UTF_8).split("\n");
+            assert objects.length == 4 && objects[0].startsWith("{\"record\":\"stage\"")
+                    : "Expected one JSON object per row";
+
+            // the archive holds the rows of every race
+            StringWriter archive = new StringWriter();
+            portal.exportArchive(archive, ClassificationExporter.Format.CSV);
+            assert archive.toString().split("\n").length == 5 : "Expected the rows of both races";
+
+            try {
+                // test exportRace with an invalid race ID
+                portal.exportRace(-1, new StringWriter(), ClassificationExporter.Format.CSV);
+                assert false : "Expected an IDNotRecognisedException to be thrown";
+            } catch (IDNotRecognisedException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | IOException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testImportStartList() {
+        System.out.println("The system is testing the importStartList method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // import two teams with their riders
+            StartList startList = new StartList()
+                    .addTeam("Blue", "Blue jerseys").addRider("BlueOne", 1990).addRider("BlueTwo", 1991)
+                    .addTeam("Red", "Red jerseys").addRider("RedOne", 1992);
+            int[] teamIds = portal.importStartList(startList);
+            assert teamIds.length == 2 : "Expected two teams to be imported";
+            assert portal.getTeamRiders(teamIds[0]).length == 2 && portal.getTeamRiders(teamIds[1]).length == 1
+                    : "Expected the riders to belong to the team above them";
+
+            // a start list repeating a team is rejected as a whole
+            try {
+                portal.importStartList(new StartList().addTeam("Green", "First").addTeam("Green", "Again"));
+                assert false : "Expected an IllegalNameException to be thrown";
+            } catch (IllegalNameException e) {
+                e.printStackTrace();
+            }
+
+            // a start list reusing an existing team name is rejected as a whole
+            try {
+                portal.importStartList(new StartList().addTeam("Yellow", "New").addTeam("Blue", "Existing"));
+                assert false : "Expected an IllegalNameException to be thrown";
+            } catch (IllegalNameException e) {
+                e.printStackTrace();
+            }
+
+            // a start list with an invalid rider is rejected as a whole
+            try {
+                portal.importStartList(new StartList().addTeam("Black", "New").addRider("Old", 1850));
+                assert false : "Expected an IllegalArgumentException to be thrown";
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+            assert portal.getTeams().length == 2 : "Expected rejected start lists to add no team";
+
+            // teams imported in one call are named like teams created one at a time
+            try {
+                portal.createTeam("Red", "Another red team");
+                assert false : "Expected an IllegalNameException to be thrown";
+            } catch (IllegalNameException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetGeneralClassificationAt() {
+        System.out.println("The system is testing the getGeneralClassificationAt method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a race of one flat stage
+            int teamId = portal.createTeam("HistoryTeam", "Riders of the replayed race");
+            int riderId1 = portal.createRider(teamId, "HistoryRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "HistoryRiderTwo", 1991);
+            int raceId = portal.createRace("HistoryRace", "Race read as it stood earlier");
+            int stageId = portal.addStageToRace(raceId, "HistoryStage", "Flat stage", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId);
+            assert portal.getResultSequence() == 0 : "Expected sequence 0 before any result";
+
+            // riderId1 finishes first, then riderId2 faster, then riderId1 is deleted
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(12, 0));
+            long afterFirst = portal.getResultSequence();
+            portal.setOffHeapResults(true);
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 0), LocalTime.of(11, 50));
+            long afterSecond = portal.getResultSequence();
+            portal.deleteRiderResultsInStage(stageId, riderId1);
+            long afterDeletion = portal.getResultSequence();
+            assert afterFirst < afterSecond && afterSecond < afterDeletion
+                    : "Expected the sequence to grow with each mutation";
+
+            // each point in the history is replayed with the results of that time
+            assert portal.getRidersGeneralClassificationRankAt(raceId, 0).length == 0
+                    : "Expected no rider classified before any result";
+            assert Arrays.equals(portal.getRidersGeneralClassificationRankAt(raceId, afterFirst),
+                    new int[] { riderId1 }) : "Expected only riderId1 classified after the first result";
+            assert Arrays.equals(portal.getRidersGeneralClassificationRankAt(raceId, afterSecond),
+                    new int[] { riderId2, riderId1 }) : "Expected riderId2 to lead after the second result";
+            assert Arrays.equals(portal.getRidersGeneralClassificationRankAt(raceId, afterDeletion),
+                    new int[] { riderId2 }) : "Expected only riderId2 classified after the deletion";
+            GeneralClassification classification = portal.getGeneralClassificationAt(raceId, afterSecond);
+            assert classification.getTotalTimes()[0] == Duration.ofMinutes(110).toNanos()
+                    : "Expected a total time of 1:50 for the leader";
+            assert Arrays.equals(portal.getRidersPointClassificationRankAt(raceId, afterSecond),
+                    new int[] { riderId2, riderId1 }) : "Expected riderId2 to lead the points classification";
+            assert portal.getRidersMountainPointClassificationRankAt(raceId, afterSecond).length == 2
+                    : "Expected two riders in the mountain classification";
+
+            try {
+                // test getGeneralClassificationAt with an invalid race ID
+                portal.getGeneralClassificationAt(-1, afterFirst);
+                assert false : "Expected an IDNotRecognisedException to be thrown";
+            } catch (IDNotRecognisedException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetRaceStagesWithoutStartTime() {
+        System.out.println("The system is testing the getRaceStages method with stages without a start time...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // stages without a start time are ordered after the others, by ID
+            int raceId = portal.createRace("UnscheduledRace", "Race with unscheduled stages");
+            int stageId1 = portal.addStageToRace(raceId, "UnscheduledOne", "No start time", 50.0, null,
+                    StageType.FLAT);
+            int stageId2 = portal.addStageToRace(raceId, "ScheduledStage", "Has a start time", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            int stageId3 = portal.addStageToRace(raceId, "UnscheduledTwo", "No start time", 50.0, null,
+                    StageType.FLAT);
+            assert Arrays.equals(portal.getRaceStages(raceId), new int[] { stageId2, stageId1, stageId3 })
+                    : "Expected the scheduled stage first, then the unscheduled stages by ID";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetRidersPointsInStageAcrossMidnight() {
+        System.out.println("The system is testing sprint points of a stage crossing midnight...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a night stage with a sprint
+            int teamId = portal.createTeam("SprintNightTeam", "Riders of the night sprint");
+            int riderId1 = portal.createRider(teamId, "SprintNightOne", 1990);
+            int riderId2 = portal.createRider(teamId, "SprintNightTwo", 1991);
+            int raceId = portal.createRace("SprintNightRace", "Race with a sprint crossing midnight");
+            int stageId = portal.addStageToRace(raceId, "SprintNightStage", "Sprint crossing midnight", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 23, 0), StageType.FLAT);
+            portal.addIntermediateSprintToStage(stageId, 20.0);
+            portal.concludeStagePreparation(stageId);
+
+            // riderId1 passes the sprint before midnight, riderId2 after it
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(23, 0), LocalTime.of(23, 59),
+                    LocalTime.of(1, 0));
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(23, 0), LocalTime.of(0, 1),
+                    LocalTime.of(1, 5));
+
+            // riderId1 wins both the stage and the sprint
+            int[] points = portal.getRidersPointsInStage(stageId);
+            assert points[0] == 70 && points[1] == 47 : "Expected 70 and 47 points, got " + Arrays.toString(points);
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | InvalidLocationException | InvalidStageTypeException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetStandingsAtCheckpointAcrossMidnight() {
+        System.out.println("The system is testing the standings at a checkpoint crossing midnight...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a night stage with a sprint
+            int teamId = portal.createTeam("StandingsNightTeam", "Riders of the night standings");
+            int riderId1 = portal.createRider(teamId, "StandingsNightOne", 1990);
+            int riderId2 = portal.createRider(teamId, "StandingsNightTwo", 1991);
+            int riderId3 = portal.createRider(teamId, "StandingsNightThree", 1992);
+            int raceId = portal.createRace("StandingsNightRace", "Race with standings crossing midnight");
+            int stageId = portal.addStageToRace(raceId, "StandingsNightStage", "Sprint crossing midnight", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 23, 0), StageType.FLAT);
+            int sprintId = portal.addIntermediateSprintToStage(stageId, 20.0);
+            portal.concludeStagePreparation(stageId);
+
+            // riderId1 passes the sprint before midnight
+            portal.recordCheckpointPassage(stageId, riderId1, 0, LocalTime.of(23, 0));
+            portal.recordCheckpointPassage(stageId, riderId1, 1, LocalTime.of(23, 59));
+
+            // riderId2 passes it after midnight, its start arriving late
+            portal.recordCheckpointPassage(stageId, riderId2, 1, LocalTime.of(0, 1));
+            assert Arrays.equals(portal.getStandingsAtCheckpoint(sprintId).getRiderIds(), new int[] { riderId1 })
+                    : "Expected a passage to wait for the rider's start";
+            portal.recordCheckpointPassage(stageId, riderId2, 0, LocalTime.of(23, 0));
+            assert Arrays.equals(portal.getStandingsAtCheckpoint(sprintId).getRiderIds(),
+                    new int[] { riderId1, riderId2 }) : "Expected riderId1 to pass before riderId2";
+
+            // riderId3 started later but reached the sprint sooner
+            portal.registerRiderResultsInStage(stageId, riderId3, LocalTime.of(23, 30), LocalTime.of(0, 0),
+                    LocalTime.of(1, 0));
+            CheckpointStandings standings = portal.getStandingsAtCheckpoint(sprintId);
+            assert Arrays.equals(standings.getRiderIds(), new int[] { riderId3, riderId1, riderId2 })
+                    : "Expected the riders in order of time since their start";
+            assert standings.getPassageTimes()[0] == 0 : "Expected the passage time of day to be kept";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | InvalidLocationException | InvalidStageTypeException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testLoadCyclingPortalOffHeap() {
+        System.out.println("The system is testing the loadCyclingPortal method with off-heap results...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a stage with a sprint, its results kept off-heap
+            portal.setOffHeapResults(true);
+            int teamId = portal.createTeam("OffHeapTeam", "Riders of the off-heap stage");
+            int riderId1 = portal.createRider(teamId, "OffHeapRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "OffHeapRiderTwo", 1991);
+            int riderId3 = portal.createRider(teamId, "OffHeapRiderThree", 1992);
+            int raceId = portal.createRace("OffHeapRace", "Race saved with off-heap results");
+            int stageId = portal.addStageToRace(raceId, "OffHeapStage", "Stage with a sprint", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            int sprintId = portal.addIntermediateSprintToStage(stageId, 20.0);
+            portal.concludeStagePreparation(stageId);
+
+            // two riders finish, a third is still on the road past the sprint
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(11, 0),
+                    LocalTime.of(12, 0));
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 0), LocalTime.of(10, 50),
+                    LocalTime.of(12, 10));
+            long sequence = portal.getResultSequence();
+            portal.recordCheckpointPassage(stageId, riderId3, 0, LocalTime.of(10, 0));
+            portal.recordCheckpointPassage(stageId, riderId3, 1, LocalTime.of(10, 55));
+
+            // save the portal and load it into another one
+            File tempFile = File.createTempFile("portal", ".tmp");
+            portal.saveCyclingPortal(tempFile.getAbsolutePath());
+            CyclingPortalImpl loaded = new CyclingPortalImpl();
+            loaded.loadCyclingPortal(tempFile.getAbsolutePath());
+            tempFile.delete();
+
+            // the results, their history and the running order survive the round trip
+            assert loaded.isOffHeapResults() : "Expected the loaded portal to keep results off-heap";
+            assert Arrays.equals(loaded.getRidersRankInStage(stageId), new int[] { riderId1, riderId2 })
+                    : "Expected the same stage ranking after loading";
+            assert Arrays.equals(loaded.getRiderResultsInStage(stageId, riderId2),
+                    portal.getRiderResultsInStage(stageId, riderId2)) : "Expected the same results after loading";
+            assert Arrays.equals(loaded.getRidersGeneralClassificationRankAt(raceId, sequence),
+                    new int[] { riderId1, riderId2 }) : "Expected the same history after loading";
+            assert Arrays.equals(loaded.getStandingsAtCheckpoint(sprintId).getRiderIds(),
+                    new int[] { riderId2, riderId3, riderId1 }) : "Expected the same standings after loading";
+
+            // the rider on the road finishes in the loaded portal
+            loaded.recordCheckpointPassage(stageId, riderId3, 2, LocalTime.of(11, 30));
+            assert Arrays.equals(loaded.getRidersRankInStage(stageId), new int[] { riderId3, riderId1, riderId2 })
+                    : "Expected the finished rider to lead the stage";
+            assert Arrays.equals(loaded.getStandingsAtCheckpoint(sprintId).getRiderIds(),
+                    new int[] { riderId2, riderId3, riderId1 }) : "Expected each rider listed once at the sprint";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | InvalidLocationException | InvalidStageTypeException | IOException
+                | ClassNotFoundException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetRidersRankInStageConcurrently() {
+        System.out.println("The system is testing getRidersRankInStage from several threads...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create three stages sharing a cache too small to hold them all
+            portal.setResultCacheCapacity(2);
+            int teamId = portal.createTeam("QueryTeam", "Riders queried by several threads");
+            int riderId1 = portal.createRider(teamId, "QueryRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "QueryRiderTwo", 1991);
+            int raceId = portal.createRace("QueryRace", "Race queried by several threads");
+            int[] stageIds = new int[3];
+            for (int s = 0; s < stageIds.length; s++) {
+                stageIds[s] = portal.addStageToRace(raceId, "QueryStage" + s, "Stage queried concurrently", 50.0,
+                        LocalDateTime.of(2024, 6, 1 + s, 10, 0), StageType.FLAT);
+                portal.concludeStagePreparation(stageIds[s]);
+                portal.registerRiderResultsInStage(stageIds[s], riderId1, LocalTime.of(10, 0), LocalTime.of(12, 0));
+            }
+
+            // four readers query the stages while results are still being registered
+            Thread[] readers = new Thread[4];
+            boolean[] failed = new boolean[readers.length];
+            for (int r = 0; r < readers.length; r++) {
+                final int reader = r;
+                readers[r] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            int stageId = stageIds[(i + reader) % stageIds.length];
+                            int[] ranks = portal.getRidersRankInStage(stageId);
+                            LocalTime[] times = portal.getRankedAdjustedElapsedTimesInStage(stageId);
+                            if (ranks.length == 0 || times.length == 0) {
+                                failed[reader] = true;
+                            }
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        failed[reader] = true;
+                    }
+                });
+                readers[r].start();
+            }
+            for (int stageId : stageIds) {
+                portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 0), LocalTime.of(11, 0));
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            for (boolean readerFailed : failed) {
+                assert !readerFailed : "Expected every query to succeed";
+            }
+            for (int stageId : stageIds) {
+                assert Arrays.equals(portal.getRidersRankInStage(stageId), new int[] { riderId2, riderId1 })
+                        : "Expected the last results to be ranked";
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | InterruptedException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testAddRankingListener() {
+        System.out.println("The system is testing the addRankingListener method...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // create a race of one stage with a listener attached
+            int teamId = portal.createTeam("ListenedTeam", "Riders of the listened race");
+            int riderId1 = portal.createRider(teamId, "ListenedRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "ListenedRiderTwo", 1991);
+            int riderId3 = portal.createRider(teamId, "ListenedRiderThree", 1992);
+            int raceId = portal.createRace("ListenedRace", "Race with a ranking listener");
+            int stageId = portal.addStageToRace(raceId, "ListenedStage", "Stage with a ranking listener", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId);
+            List<List<RankingEvent>> batches = new ArrayList<>();
+            portal.addRankingListener(batches::add);
+
+            // the first result takes the lead
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(12, 0));
+            List<RankingEvent> events = batches.get(0);
+            assert hasEvent(events, RankingEvent.Type.RESULT_REGISTERED, riderId1, -1, 0)
+                    : "Expected riderId1 to be registered first";
+            assert hasEvent(events, RankingEvent.Type.GC_LEADER_CHANGED, riderId1, -1, -1)
+                    : "Expected riderId1 to lead the race";
+
+            // a faster result pushes riderId1 back and flips the leader
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 0), LocalTime.of(11, 50));
+            events = batches.get(1);
+            assert events.size() == 3 : "Expected three events, got " + events;
+            assert hasEvent(events, RankingEvent.Type.RESULT_REGISTERED, riderId2, -1, 0)
+                    : "Expected riderId2 to be registered first";
+            assert hasEvent(events, RankingEvent.Type.RANK_CHANGED, riderId1, 0, 1)
+                    : "Expected riderId1 to move from first to second";
+            assert hasEvent(events, RankingEvent.Type.GC_LEADER_CHANGED, riderId2, -1, -1)
+                    : "Expected riderId2 to lead the race";
+
+            // a slower result changes no other position and not the leader
+            portal.registerRiderResultsInStage(stageId, riderId3, LocalTime.of(10, 0), LocalTime.of(12, 10));
+            events = batches.get(2);
+            assert events.size() == 1 && hasEvent(events, RankingEvent.Type.RESULT_REGISTERED, riderId3, -1, 2)
+                    : "Expected only riderId3 to be registered third, got " + events;
+
+            // deleting the leader's result moves the others up
+            portal.deleteRiderResultsInStage(stageId, riderId2);
+            events = batches.get(3);
+            assert hasEvent(events, RankingEvent.Type.RESULT_DELETED, riderId2, 0, -1)
+                    : "Expected the result of riderId2 to be deleted";
+            assert hasEvent(events, RankingEvent.Type.RANK_CHANGED, riderId1, 1, 0)
+                    : "Expected riderId1 to move from second to first";
+            assert hasEvent(events, RankingEvent.Type.RANK_CHANGED, riderId3, 2, 1)
+                    : "Expected riderId3 to move from third to second";
+            assert hasEvent(events, RankingEvent.Type.GC_LEADER_CHANGED, riderId1, -1, -1)
+                    : "Expected riderId1 to lead the race again";
+
+            // removing a rider deletes their results too
+            portal.removeRider(riderId1);
+            events = batches.get(4);
+            assert hasEvent(events, RankingEvent.Type.RESULT_DELETED, riderId1, 0, -1)
+                    : "Expected the result of the removed rider to be deleted";
+            assert hasEvent(events, RankingEvent.Type.RANK_CHANGED, riderId3, 1, 0)
+                    : "Expected riderId3 to move from second to first";
+            assert hasEvent(events, RankingEvent.Type.GC_LEADER_CHANGED, riderId3, -1, -1)
+                    : "Expected riderId3 to lead the race";
+            assert batches.size() == 5 : "Expected one batch of events per mutation";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static boolean hasEvent(List<RankingEvent> events, RankingEvent.Type type, int riderId, int oldPosition,
+            int newPosition) {
+        for (RankingEvent event : events) {
+            if (event.getType() == type && event.getRiderId() == riderId && event.getOldPosition() == oldPosition
+                    && event.getNewPosition() == newPosition) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void testLeaderboardServer() {
+        System.out.println("The system is testing the LeaderboardServer class...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        LeaderboardServer server = null;
+        try {
+            // create a stage with one result and serve it on any free port
+            int teamId = portal.createTeam("StreamTeam", "Riders of the streamed race");
+            int riderId1 = portal.createRider(teamId, "StreamRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "StreamRiderTwo", 1991);
+            int riderId3 = portal.createRider(teamId, "StreamRiderThree", 1992);
+            int riderId4 = portal.createRider(teamId, "StreamRiderFour", 1993);
+            int raceId = portal.createRace("StreamRace", "Race streamed to spectators");
+            int stageId = portal.addStageToRace(raceId, "StreamStage", "Stage streamed to spectators", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId);
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(11, 0));
+            server = new LeaderboardServer(portal, 0, 50);
+            server.start();
+
+            // a stage stream starts with the current ranking
+            BufferedReader stageStream = openStream(server, "/stages/" + stageId);
+            String[] event = readEvent(stageStream);
+            assert event[0].equals("ranking") && event[1].contains("\"riders\":[" + riderId1 + "]")
+                    : "Expected the current stage ranking first, got " + event[1];
+
+            // two results reordering the stage within one interval give a single update;
+            // holding the server's monitor keeps the flusher from running between them
+            synchronized (server) {
+                portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 0), LocalTime.of(10, 50));
+                portal.registerRiderResultsInStage(stageId, riderId3, LocalTime.of(10, 0), LocalTime.of(10, 40));
+            }
+            event = readEvent(stageStream);
+            assert event[0].equals("moves") : "Expected a moves event, got " + event[0];
+            assert event[1].contains("[" + riderId3 + ",0]") && event[1].contains("[" + riderId2 + ",1]")
+                    && event[1].contains("[" + riderId1 + ",2]")
+                    : "Expected the moves of both results in one event, got " + event[1];
+
+            // a race stream starts with the general classification
+            BufferedReader raceStream = openStream(server, "/races/" + raceId);
+            event = readEvent(raceStream);
+            assert event[0].equals("ranking") && event[1].contains("\"riders\":[" + riderId3 + "," + riderId2 + ","
+                    + riderId1 + "]") : "Expected the current general classification first, got " + event[1];
+
+            // two changes made under the portal's monitor are diffed as one
+            synchronized (portal) {
+                portal.deleteRiderResultsInStage(stageId, riderId3);
+                portal.registerRiderResultsInStage(stageId, riderId4, LocalTime.of(10, 0), LocalTime.of(10, 45));
+            }
+            event = readEvent(raceStream);
+            while (event[0].equals("leader")) {
+                event = readEvent(raceStream);
+            }
+            assert event[0].equals("moves") : "Expected a moves event, got " + event[0];
+            assert event[1].contains("[" + riderId4 + ",0]") && event[1].contains("[" + riderId3 + ",-1]")
+                    && !event[1].contains("[" + riderId2 + ",") && !event[1].contains("[" + riderId1 + ",")
+                    : "Expected only the riders who moved, got " + event[1];
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException | IOException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+        }
+    }
+
+    private static void testGetTeamClassification() {
+        System.out.println("The system is testing the getTeamClassificationInStage and getTeamClassificationInRace "
+                + "methods...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // team A has four riders in both stages, team B three in the first stage and two in the second
+            int teamA = portal.createTeam("ClassifiedTeamA", "Team with four riders");
+            int teamB = portal.createTeam("ClassifiedTeamB", "Team with three riders");
+            int[] ridersA = new int[4];
+            for (int i = 0; i < ridersA.length; i++) {
+                ridersA[i] = portal.createRider(teamA, "TeamARider" + i, 1990);
+            }
+            int[] ridersB = new int[3];
+            for (int i = 0; i < ridersB.length; i++) {
+                ridersB[i] = portal.createRider(teamB, "TeamBRider" + i, 1990);
+            }
+            int raceId = portal.createRace("TeamRace", "Race with a team classification");
+            int stageId1 = portal.addStageToRace(raceId, "TeamStageOne", "First team stage", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            int stageId2 = portal.addStageToRace(raceId, "TeamStageTwo", "Second team stage", 50.0,
+                    LocalDateTime.of(2024, 6, 2, 10, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId1);
+            portal.concludeStagePreparation(stageId2);
+            for (int i = 0; i < ridersA.length; i++) {
+                portal.registerRiderResultsInStage(stageId1, ridersA[i], LocalTime.of(10, 0), LocalTime.of(11, i));
+                portal.registerRiderResultsInStage(stageId2, ridersA[i], LocalTime.of(10, 0),
+                        LocalTime.of(10, 30 + i));
+            }
+            for (int i = 0; i < ridersB.length; i++) {
+                portal.registerRiderResultsInStage(stageId1, ridersB[i], LocalTime.of(10, 0),
+                        LocalTime.of(10, 50 + i));
+            }
+            for (int i = 0; i < 2; i++) {
+                portal.registerRiderResultsInStage(stageId2, ridersB[i], LocalTime.of(10, 0),
+                        LocalTime.of(10, 20 + i));
+            }
+
+            // the stage time of a team sums its three best riders
+            TeamClassification stage1 = portal.getTeamClassificationInStage(stageId1);
+            assert Arrays.equals(stage1.getTeamIds(), new int[] { teamB, teamA })
+                    : "Expected team B ahead of team A in the first stage";
+            assert stage1.getTeamTimes()[0] == Duration.ofMinutes(50 + 51 + 52).toNanos()
+                    && stage1.getTeamTimes()[1] == Duration.ofMinutes(60 + 61 + 62).toNanos()
+                    : "Expected the sum of the three best times of each team";
+
+            // a team with fewer than three riders finishing is not classified
+            TeamClassification stage2 = portal.getTeamClassificationInStage(stageId2);
+            assert Arrays.equals(stage2.getTeamIds(), new int[] { teamA })
+                    : "Expected only team A to be classified in the second stage";
+
+            // deleting a counted time rebuilds the team from the remaining results
+            portal.deleteRiderResultsInStage(stageId1, ridersA[1]);
+            stage1 = portal.getTeamClassificationInStage(stageId1);
+            assert stage1.getTeamTimes()[1] == Duration.ofMinutes(60 + 62 + 63).toNanos()
+                    : "Expected the fourth rider of team A to be counted after the deletion";
+
+            // deleting a time that is not counted leaves the team time unchanged
+            portal.deleteRiderResultsInStage(stageId2, ridersA[3]);
+            stage2 = portal.getTeamClassificationInStage(stageId2);
+            assert stage2.getTeamTimes()[0] == Duration.ofMinutes(30 + 31 + 32).toNanos()
+                    : "Expected team A's time in the second stage to be unchanged";
+
+            // the race time sums the stage times of the teams classified in every stage
+            TeamClassification race = portal.getTeamClassificationInRace(raceId);
+            assert Arrays.equals(race.getTeamIds(), new int[] { teamA })
+                    : "Expected only team A to be classified in the race";
+            assert race.getTeamTimes()[0] == Duration.ofMinutes(60 + 62 + 63 + 30 + 31 + 32).toNanos()
+                    : "Expected team A's race time to sum its stage times";
+
+            // removing a counted rider leaves team A with too few riders in the second stage
+            portal.deleteRiderResultsInStage(stageId2, ridersA[0]);
+            assert portal.getTeamClassificationInStage(stageId2).getTeamIds().length == 0
+                    : "Expected no team to be classified in the second stage";
+            assert portal.getTeamClassificationInRace(raceId).getTeamIds().length == 0
+                    : "Expected no team to be classified in the race";
+
+            // unknown IDs are rejected
+            try {
+                portal.getTeamClassificationInStage(-1);
+                assert (false) : "Expected IDNotRecognisedException for an unknown stage";
+            } catch (IDNotRecognisedException e) {
+                e.printStackTrace();
+            }
+            try {
+                portal.getTeamClassificationInRace(-1);
+                assert (false) : "Expected IDNotRecognisedException for an unknown race";
+            } catch (IDNotRecognisedException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testRankingSortRadix() {
+        System.out.println("The system is testing the RankingSort class on rankings past the radix threshold...");
+        // times rounded to the second over six hours, so five time passes are needed and many times are equal
+        int count = 3 * RankingSort.RADIX_THRESHOLD;
+        Random random = new Random(42);
+        long[] times = new long[count];
+        int[] ids = new int[count];
+        List<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shuffled.add(i * 7 + 1);
+        }
+        Collections.shuffle(shuffled, random);
+        for (int i = 0; i < count; i++) {
+            times[i] = Duration.ofHours(3).plusSeconds(random.nextInt(6 * 3600)).toNanos();
+            ids[i] = shuffled.get(i);
+        }
+        assert Arrays.stream(times).distinct().count() < count : "Expected the ranking to contain equal times";
+
+        // compare with a stable merge sort by time, then by ID
+        Integer[] expected = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            expected[i] = i;
+        }
+        Arrays.sort(expected, Comparator.<Integer>comparingLong(i -> times[i]).thenComparingInt(i -> ids[i]));
+        int[] order = RankingSort.rank(times, ids);
+        assert Arrays.equals(order, Arrays.stream(expected).mapToInt(Integer::intValue).toArray())
+                : "Expected the radix ranking to match the merge sort";
+    }
+
+    private static void testGetRidersRankInStageNanoseconds() {
+        System.out.println("The system is testing the getRidersRankInStage method with nanosecond times...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            int teamId = portal.createTeam("PhotoFinishTeam", "Team of close finishers");
+            int riderId1 = portal.createRider(teamId, "PhotoRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "PhotoRiderTwo", 1991);
+            int riderId3 = portal.createRider(teamId, "PhotoRiderThree", 1992);
+            int riderId4 = portal.createRider(teamId, "PhotoRiderFour", 1993);
+            int raceId = portal.createRace("PhotoRace", "Race decided by a photo finish");
+            int stageId = portal.addStageToRace(raceId, "PhotoStage", "Stage decided by a photo finish", 50.0,
+                    LocalDateTime.of(2024, 6, 1, 10, 0), StageType.FLAT);
+            portal.concludeStagePreparation(stageId);
+
+            // the first rider is three nanoseconds slower than the second
+            portal.registerRiderResultsInStage(stageId, riderId1, LocalTime.of(10, 0), LocalTime.of(11, 0, 0, 5));
+            portal.registerRiderResultsInStage(stageId, riderId2, LocalTime.of(10, 0), LocalTime.of(11, 0, 0, 2));
+
+            // the last two riders have identical times, registered in reverse order of their IDs
+            portal.registerRiderResultsInStage(stageId, riderId4, LocalTime.of(10, 0), LocalTime.of(11, 5));
+            portal.registerRiderResultsInStage(stageId, riderId3, LocalTime.of(10, 0), LocalTime.of(11, 5));
+
+            int[] ranks = portal.getRidersRankInStage(stageId);
+            assert Arrays.equals(ranks, new int[] { riderId2, riderId1, riderId3, riderId4 })
+                    : "Expected riders ranked apart by nanoseconds and equal times ranked by rider ID, got "
+                            + Arrays.toString(ranks);
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testGetRiderResultsAfterRemovals() {
+        System.out.println("The system is testing the getRiderResultsAcrossStages and getRiderResultsInRace "
+                + "methods after removals...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // one rider with results in three stages of one race and one stage of another
+            int teamId = portal.createTeam("HistoryTeam", "Team with a long history");
+            int riderId = portal.createRider(teamId, "HistoryRider", 1990);
+            int raceId1 = portal.createRace("HistoryRaceOne", "First race of the history");
+            int raceId2 = portal.createRace("HistoryRaceTwo", "Second race of the history");
+            int[] stageIds = new int[4];
+            for (int i = 0; i < stageIds.length; i++) {
+                stageIds[i] = portal.addStageToRace(i < 3 ? raceId1 : raceId2, "HistoryStage" + i,
+                        "Stage of the history", 50.0, LocalDateTime.of(2024, 6, 1 + i, 10, 0), StageType.FLAT);
+                portal.concludeStagePreparation(stageIds[i]);
+                portal.registerRiderResultsInStage(stageIds[i], riderId, LocalTime.of(10, 0), LocalTime.of(11, i));
+            }
+            assert Arrays.equals(portal.getRiderResultsAcrossStages(riderId).getStageIds(), stageIds)
+                    : "Expected the rider's results in every stage";
+
+            // a deleted result leaves the history
+            portal.deleteRiderResultsInStage(stageIds[0], riderId);
+            assert Arrays.equals(portal.getRiderResultsAcrossStages(riderId).getStageIds(),
+                    new int[] { stageIds[1], stageIds[2], stageIds[3] })
+                    : "Expected the deleted result to be gone";
+
+            // so do the results of a removed stage
+            portal.removeStageById(stageIds[1]);
+            RiderHistory inRace = portal.getRiderResultsInRace(riderId, raceId1);
+            assert Arrays.equals(inRace.getStageIds(), new int[] { stageIds[2] })
+                    : "Expected only the remaining stage of the first race";
+            assert inRace.getElapsedTimes()[0] == Duration.ofMinutes(62).toNanos()
+                    : "Expected the elapsed time of the remaining stage";
+
+            // and those of a removed race
+            portal.removeRaceById(raceId2);
+            RiderHistory history = portal.getRiderResultsAcrossStages(riderId);
+            assert Arrays.equals(history.getStageIds(), new int[] { stageIds[2] })
+                    : "Expected the stages of the removed race to be gone";
+
+            // a result registered again is indexed once more
+            portal.registerRiderResultsInStage(stageIds[0], riderId, LocalTime.of(10, 0), LocalTime.of(11, 10));
+            assert Arrays.equals(portal.getRiderResultsInRace(riderId, raceId1).getStageIds(),
+                    new int[] { stageIds[2], stageIds[0] })
+                    : "Expected the new result after the earlier ones";
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testRecomputeAll() {
+        System.out.println("The system is testing the setPointTables and recomputeAll methods...");
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        try {
+            // three races, each with one flat stage won by the same rider
+            int teamId = portal.createTeam("RecomputeTeam", "Team of the recomputed races");
+            int riderId1 = portal.createRider(teamId, "RecomputeRiderOne", 1990);
+            int riderId2 = portal.createRider(teamId, "RecomputeRiderTwo", 1991);
+            int[] raceIds = new int[3];
+            int[] stageIds = new int[3];
+            for (int i = 0; i < raceIds.length; i++) {
+                raceIds[i] = portal.createRace("RecomputeRace" + i, "Race to recompute");
+                stageIds[i] = portal.addStageToRace(raceIds[i], "RecomputeStage" + i, "Stage to recompute", 50.0,
+                        LocalDateTime.of(2024, 6, 1 + i, 10, 0), StageType.FLAT);
+                portal.concludeStagePreparation(stageIds[i]);
+                portal.registerRiderResultsInStage(stageIds[i], riderId1, LocalTime.of(10, 0), LocalTime.of(11, 0));
+                portal.registerRiderResultsInStage(stageIds[i], riderId2, LocalTime.of(10, 0), LocalTime.of(11, 5));
+            }
+            assert Arrays.equals(portal.getRidersPointsInRace(raceIds[0]), new int[] { 50, 30 })
+                    : "Expected the default points of a flat stage";
+
+            // change the flat stage points and recompute two races at a time
+            PointTables tables = portal.getPointTables();
+            tables.setStagePoints(StageType.FLAT, 100, 60, 40);
+            portal.setPointTables(tables);
+            List<int[]> progress = new ArrayList<>();
+            portal.recomputeAll(2, (completed, total) -> progress.add(new int[] { completed, total }));
+            assert progress.size() == 2 && Arrays.equals(progress.get(0), new int[] { 2, 3 })
+                    && Arrays.equals(progress.get(1), new int[] { 3, 3 })
+                    : "Expected a progress report after each batch of races";
+
+            // every race is classified under the new points
+            for (int i = 0; i < raceIds.length; i++) {
+                assert Arrays.equals(portal.getRidersPointsInStage(stageIds[i]), new int[] { 100, 60 })
+                        : "Expected the new points in stage " + i;
+                assert Arrays.equals(portal.getRidersPointsInRace(raceIds[i]), new int[] { 100, 60 })
+                        : "Expected the new points in race " + i;
+            }
+
+            // the tables handed in are copied
+            tables.setStagePoints(StageType.FLAT, 1, 1, 1);
+            assert portal.getPointTables().getStagePoints(StageType.FLAT, 0) == 100
+                    : "Expected later changes to the given tables to be ignored";
+
+            // a batch must hold at least one race
+            try {
+                portal.recomputeAll(0, null);
+                assert (false) : "Expected IllegalArgumentException for an empty batch";
+            } catch (IllegalArgumentException e) {
+                e.printStackTrace();
+            }
+        } catch (IDNotRecognisedException | IllegalNameException | InvalidNameException
+                | InvalidCheckpointTimesException | InvalidStageStateException | DuplicatedResultException
+                | InvalidLengthException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testPortalRegistryEviction() {
+        System.out.println("The system is testing the PortalRegistry class past its limit of loaded portals...");
+        try {
+            Path directory = Files.createTempDirectory("registry");
+            try (PortalRegistry registry = new PortalRegistry(directory, 1, 1)) {
+                // give the first tenant a race
+                CyclingPortalImpl alpha = registry.getPortal("alpha");
+                int raceId = alpha.createRace("EvictedRace", "Race of an evicted tenant");
+                assert !Files.exists(directory.resolve("alpha.portal"))
+                        : "Expected no snapshot while the portal is loaded";
+
+                // loading a second tenant evicts the first and saves its snapshot
+                registry.getPortal("beta");
+                assert registry.getLoadedCount() == 1 : "Expected one loaded portal";
+                assert Files.exists(directory.resolve("alpha.portal"))
+                        : "Expected the evicted tenant's snapshot to be written";
+                assert registry.hasTenant("alpha") : "Expected the evicted tenant to be known";
+
+                // the evicted tenant reloads with its data, evicting the second in turn
+                CyclingPortalImpl reloaded = registry.getPortal("alpha");
+                assert reloaded != alpha : "Expected the evicted portal to be loaded again";
+                assert Arrays.equals(reloaded.getRaceIds(), new int[] { raceId })
+                        : "Expected the evicted tenant's race to be reloaded";
+                assert reloaded.viewRaceDetails(raceId).contains("EvictedRace")
+                        : "Expected the evicted tenant's race details to be reloaded";
+                assert Files.exists(directory.resolve("beta.portal"))
+                        : "Expected the second tenant's snapshot to be written";
+
+                registry.removeTenant("alpha");
+                registry.removeTenant("beta");
+            }
+            Files.delete(directory);
+        } catch (IOException | ClassNotFoundException | IllegalNameException | InvalidNameException
+                | IDNotRecognisedException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static void testStringPoolSharing() {
+        System.out.println("The system is testing the sharing of strings between portals...");
+        // a string written twice to one stream is stored once, so sharing shows in the combined size
+        int length = "Shared team description ".repeat(4000).length();
+        try {
+            // portals of one registry take equal strings from its pool
+            Path directory = Files.createTempDirectory("registry");
+            try (PortalRegistry registry = new PortalRegistry(directory, 2, 1)) {
+                CyclingPortalImpl alpha = registry.getPortal("alpha");
+                CyclingPortalImpl beta = registry.getPortal("beta");
+                alpha.createTeam("SharedTeam", "Shared team description ".repeat(4000));
+                beta.createTeam("SharedTeam", "Shared team description ".repeat(4000));
+                assert serialisedSize(alpha, beta) <= serialisedSize(alpha) + serialisedSize(beta) - length
+                        : "Expected both portals to hold the same description instance";
+                registry.removeTenant("alpha");
+                registry.removeTenant("beta");
+            }
+            Files.delete(directory);
+
+            // portals with their own pools hold their own copies
+            CyclingPortalImpl first = new CyclingPortalImpl();
+            CyclingPortalImpl second = new CyclingPortalImpl();
+            first.createTeam("PooledTeam", "Shared team description ".repeat(4000));
+            second.createTeam("PooledTeam", "Shared team description ".repeat(4000));
+            assert serialisedSize(first, second) > serialisedSize(first) + serialisedSize(second) - length
+                    : "Expected separate description instances before sharing a pool";
+
+            // setting a shared pool re-interns the existing entities
+            StringPool pool = new StringPool();
+            first.setStringPool(pool);
+            second.setStringPool(pool);
+            assert serialisedSize(first, second) <= serialisedSize(first) + serialisedSize(second) - length
+                    : "Expected the existing descriptions to be re-interned into the shared pool";
+        } catch (IOException | ClassNotFoundException | IllegalNameException | InvalidNameException e) {
+            assert (false)
+                    : "Unexpected exception thrown" + e;
+        }
+    }
+
+    private static int serialisedSize(Object... objects) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            for (Object object : objects) {
+                out.writeObject(object);
+            }
+        }
+        return bytes.size();
+    }
+
+    private static BufferedReader openStream(LeaderboardServer server, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path)
+                .openConnection();
+        connection.setReadTimeout(5000);
+        return new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static String[] readEvent(BufferedReader stream) throws IOException {
+        String[] event = new String[2];
+        String line;
+        while ((line = stream.readLine()) != null && !(line.isEmpty() && event[0] != null)) {
+            if (line.startsWith("event: ")) {
+                event[0] = line.substring(7);
+            } else if (line.startsWith("data: ")) {
+                event[1] = line.substring(6);
+            }
+        }
+        return event;
+    }
 }
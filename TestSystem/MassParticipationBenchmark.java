@@ -0,0 +1,142 @@
+import cycling.CheckpointType;
+import cycling.CyclingPortalImpl;
+import cycling.StageType;
+import cycling.StartList;
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Random;
+
+/**
+ * Benchmark of the mass-participation mode of CyclingPortalImpl: a race of
+ * three stages with 50,000 finishers each, imported as CSV and queried a page
+ * at a time. Each measurement is checked against the targets documented on
+ * {@link CyclingPortalImpl#setMassParticipation(boolean)}.
+ * <p>
+ * The scenario is run once to warm up the JIT before it is measured. The
+ * number of riders can be given as the first argument.
+ */
+public class MassParticipationBenchmark {
+    private static final int TEAM_SIZE = 100;
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGE_QUERIES = 1000;
+
+    private static final double MIN_IMPORT_RATE = 100_000;
+    private static final double MAX_RANKING_MILLIS = 200;
+    private static final double MAX_GENERAL_CLASSIFICATION_MILLIS = 500;
+    private static final double MAX_PAGE_MILLIS = 1;
+
+    private static boolean passed = true;
+
+    public static void main(String[] args) throws Exception {
+        int riderCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+
+        System.out.println("Warming up...");
+        run(riderCount, false);
+        System.out.println("Measuring " + riderCount + " riders per stage, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        run(riderCount, true);
+
+        System.out.println(passed ? "All targets met" : "Some targets missed");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static void run(int riderCount, boolean report) throws Exception {
+        CyclingPortalImpl portal = new CyclingPortalImpl();
+        portal.setMassParticipation(true);
+
+        // one race of three stages, each with at most one checkpoint
+        int raceId = portal.createRace("GranFondo", "Mass-participation benchmark");
+        int[] stageIds = new int[3];
+        stageIds[0] = portal.addStageToRace(raceId, "Flat", "", 120, LocalDateTime.of(2024, 6, 1, 8, 0),
+                StageType.FLAT);
+        portal.addIntermediateSprintToStage(stageIds[0], 60);
+        stageIds[1] = portal.addStageToRace(raceId, "Mountain", "", 140, LocalDateTime.of(2024, 6, 2, 8, 0),
+                StageType.HIGH_MOUNTAIN);
+        portal.addCategorizedClimbToStage(stageIds[1], 100.0, CheckpointType.HC, 8.0, 12.0);
+        stageIds[2] = portal.addStageToRace(raceId, "TimeTrial", "", 30, LocalDateTime.of(2024, 6, 3, 8, 0),
+                StageType.TT);
+        for (int stageId : stageIds) {
+            portal.concludeStagePreparation(stageId);
+        }
+
+        // the riders, in teams of a hundred
+        StartList startList = new StartList();
+        for (int i = 0; i < riderCount; i++) {
+            if (i % TEAM_SIZE == 0) {
+                startList.addTeam("Club" + i / TEAM_SIZE, "");
+            }
+            startList.addRider("Rider " + i, 1960 + i % 45);
+        }
+        portal.importStartList(startList);
+
+        // stream every stage's results in
+        Random random = new Random(42);
+        long importNanos = 0;
+        for (int s = 0; s < stageIds.length; s++) {
+            String csv = results(riderCount, portal.getStageCheckpoints(stageIds[s]).length, random);
+            long start = System.nanoTime();
+            portal.importStageResults(stageIds[s], new StringReader(csv));
+            importNanos += System.nanoTime() - start;
+        }
+        double importRate = 3.0 * riderCount / (importNanos / 1e9);
+
+        // the first ranking of each stage computes its classification
+        long rankingNanos = 0;
+        for (int stageId : stageIds) {
+            long start = System.nanoTime();
+            portal.getRidersRankInStage(stageId, 0, PAGE_SIZE);
+            rankingNanos = Math.max(rankingNanos, System.nanoTime() - start);
+        }
+
+        long start = System.nanoTime();
+        portal.getRidersGeneralClassificationRank(raceId, 0, PAGE_SIZE);
+        long generalClassificationNanos = System.nanoTime() - start;
+
+        // pages read from the computed rankings
+        start = System.nanoTime();
+        for (int i = 0; i < PAGE_QUERIES; i++) {
+            int offset = random.nextInt(riderCount);
+            portal.getRidersRankInStage(stageIds[i % 3], offset, PAGE_SIZE);
+            portal.getRankedAdjustedElapsedTimesInStage(stageIds[i % 3], offset, PAGE_SIZE);
+            portal.getGeneralClassificationTimesInRace(raceId, offset, PAGE_SIZE);
+        }
+        double pageMillis = (System.nanoTime() - start) / 1e6 / (3 * PAGE_QUERIES);
+
+        if (report) {
+            check("Import", importRate, " results/s", importRate >= MIN_IMPORT_RATE, MIN_IMPORT_RATE);
+            check("First stage ranking", rankingNanos / 1e6, " ms",
+                    rankingNanos / 1e6 <= MAX_RANKING_MILLIS, MAX_RANKING_MILLIS);
+            check("General classification", generalClassificationNanos / 1e6, " ms",
+                    generalClassificationNanos / 1e6 <= MAX_GENERAL_CLASSIFICATION_MILLIS,
+                    MAX_GENERAL_CLASSIFICATION_MILLIS);
+            check("Page of " + PAGE_SIZE, pageMillis, " ms", pageMillis <= MAX_PAGE_MILLIS, MAX_PAGE_MILLIS);
+        }
+    }
+
+    /**
+     * Generates the CSV results of a stage: riders start together at 8:00 and
+     * finish three to seven hours later, with nanosecond timings.
+     */
+    private static String results(int riderCount, int checkpointCount, Random random) {
+        StringBuilder csv = new StringBuilder(riderCount * (40 + 20 * checkpointCount));
+        LocalTime start = LocalTime.of(8, 0);
+        for (int riderId = 1; riderId <= riderCount; riderId++) {
+            long elapsed = 3 * 3_600_000_000_000L + (long) (random.nextDouble() * 4 * 3_600_000_000_000L);
+            csv.append(riderId).append(',').append(start);
+            for (int c = 1; c <= checkpointCount; c++) {
+                csv.append(',').append(start.plusNanos(elapsed * c / (checkpointCount + 1)));
+            }
+            csv.append(',').append(start.plusNanos(elapsed)).append('\n');
+        }
+        return csv.toString();
+    }
+
+    private static void check(String name, double value, String unit, boolean met, double target) {
+        System.out.printf("%-24s %12.3f%s (target %s%.0f%s) %s%n", name, value, unit,
+                unit.contains("/") ? ">= " : "<= ", target, unit, met ? "PASS" : "FAIL");
+        passed &= met;
+    }
+}
@@ -0,0 +1,209 @@
+package cycling;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses a calendar of races, stages and checkpoints from CSV in one pass.
+ * <p>
+ * Each line defines one entity; stages belong to the race above them and
+ * checkpoints to the stage above them:
+ *
+ * <pre>
+ * RACE,name,description
+ * STAGE,name,description,length,startTime,type
+ * CLIMB,location,type,averageGradient,length
+ * SPRINT,location
+ * </pre>
+ *
+ * Start times use the ISO-8601 local date-time format and types are the
+ * {@link StageType} and {@link CheckpointType} constant names. Fields may be
+ * quoted with double quotes, doubling the quotes they contain. Blank lines
+ * and lines starting with '#' are ignored.
+ * <p>
+ * The importer only checks the syntax of the file; the definitions are
+ * validated against the portal rules by
+ * {@link CyclingPortalImpl#importCalendar(java.io.Reader)}.
+ */
+public class CalendarImporter {
+
+    private CalendarImporter() {
+    }
+
+    /**
+     * Reads every race definition of a calendar.
+     *
+     * @param reader The calendar source.
+     * @return The races in file order.
+     * @throws IOException If the source cannot be read.
+     * @throws IllegalArgumentException If a line is malformed, with its line number.
+     */
+    public static List<RaceEntry> read(BufferedReader reader) throws IOException {
+        List<RaceEntry> calendar = new ArrayList<>();
+        RaceEntry race = null;
+        StageEntry stage = null;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            List<String> fields = split(line, lineNumber);
+            try {
+                switch (fields.get(0).trim()) {
+                    case "RACE":
+                        expectFields(fields, 3);
+                        race = new RaceEntry(lineNumber, fields.get(1), fields.get(2));
+                        stage = null;
+                        calendar.add(race);
+                        break;
+                    case "STAGE":
+                        expectFields(fields, 6);
+                        if (race == null) {
+                            throw new IllegalArgumentException("stage outside of a race");
+                        }
+                        stage = new StageEntry(lineNumber, fields.get(1), fields.get(2),
+                                Double.parseDouble(fields.get(3).trim()), LocalDateTime.parse(fields.get(4).trim()),
+                                StageType.valueOf(fields.get(5).trim()));
+                        race.stages.add(stage);
+                        break;
+                    case "CLIMB":
+                        expectFields(fields, 5);
+                        if (stage == null) {
+                            throw new IllegalArgumentException("checkpoint outside of a stage");
+                        }
+                        CheckpointType type = CheckpointType.valueOf(fields.get(2).trim());
+                        if (type == CheckpointType.SPRINT) {
+                            throw new IllegalArgumentException("sprints must use a SPRINT line");
+                        }
+                        stage.checkpoints.add(new CheckpointEntry(lineNumber, Double.parseDouble(fields.get(1).trim()),
+                                type, Double.parseDouble(fields.get(3).trim()),
+                                Double.parseDouble(fields.get(4).trim())));
+                        break;
+                    case "SPRINT":
+                        expectFields(fields, 2);
+                        if (stage == null) {
+                            throw new IllegalArgumentException("checkpoint outside of a stage");
+                        }
+                        stage.checkpoints.add(new CheckpointEntry(lineNumber, Double.parseDouble(fields.get(1).trim()),
+                                CheckpointType.SPRINT, 0, 0));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown record " + fields.get(0));
+                }
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": invalid start time", e);
+            } catch (IllegalArgumentException e) {
+                // also covers NumberFormatException and unknown enum constants
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return calendar;
+    }
+
+    /**
+     * Checks the number of fields of a record.
+     */
+    private static void expectFields(List<String> fields, int count) {
+        if (fields.size() != count) {
+            throw new IllegalArgumentException("expected " + count + " fields but found " + fields.size());
+        }
+    }
+
+    /**
+     * Splits a line into fields, unquoting quoted fields.
+     */
+    private static List<String> split(String line, int lineNumber) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": unterminated quote");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    /**
+     * A race read from the calendar, with its stages.
+     */
+    public static class RaceEntry {
+        final int line;
+        final String name;
+        final String description;
+        final List<StageEntry> stages = new ArrayList<>();
+
+        RaceEntry(int line, String name, String description) {
+            this.line = line;
+            this.name = name;
+            this.description = description;
+        }
+    }
+
+    /**
+     * A stage read from the calendar, with its checkpoints.
+     */
+    public static class StageEntry {
+        final int line;
+        final String name;
+        final String description;
+        final double length;
+        final LocalDateTime startTime;
+        final StageType type;
+        final List<CheckpointEntry> checkpoints = new ArrayList<>();
+
+        StageEntry(int line, String name, String description, double length, LocalDateTime startTime,
+                StageType type) {
+            this.line = line;
+            this.name = name;
+            this.description = description;
+            this.length = length;
+            this.startTime = startTime;
+            this.type = type;
+        }
+    }
+
+    /**
+     * A climb or intermediate sprint read from the calendar.
+     */
+    public static class CheckpointEntry {
+        final int line;
+        final double location;
+        final CheckpointType type;
+        final double averageGradient;
+        final double length;
+
+        CheckpointEntry(int line, double location, CheckpointType type, double averageGradient, double length) {
+            this.line = line;
+            this.location = location;
+            this.type = type;
+            this.averageGradient = averageGradient;
+            this.length = length;
+        }
+    }
+}
@@ -9,6 +9,7 @@ public class Checkpoint implements Serializable {
     private static final long serialVersionUID = 1L;
     
     private int id;
+    private int stageId;
     private double location;
     private CheckpointType type;
     private double averageGradient;
@@ -17,12 +18,14 @@ public class Checkpoint implements Serializable {
      * Constructor to initialize a checkpoint.
      * 
      * @param id The unique ID of the checkpoint.
+     * @param stageId The ID of the stage the checkpoint belongs to.
      * @param location The kilometre location where the checkpoint is placed.
      * @param type The category of the checkpoint.
      * @param averageGradient The average gradient for the checkpoint.
      */
-    public Checkpoint(int id, double location, CheckpointType type, double averageGradient) {
+    public Checkpoint(int id, int stageId, double location, CheckpointType type, double averageGradient) {
         this.id = id;
+        this.stageId = stageId;
         this.location = location;
         this.type = type;
         this.averageGradient = averageGradient;
@@ -33,6 +36,10 @@ public class Checkpoint implements Serializable {
         return id;
     }
 
+    public int getStageId() {
+        return stageId;
+    }
+
     public double getLocation() {
         return location;
     }
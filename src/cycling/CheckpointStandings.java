@@ -0,0 +1,120 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The running order at an intermediate checkpoint: riders in the order they
+ * passed it, their passage times and the points they earned there.
+ */
+public class CheckpointStandings implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int checkpointId;
+    private CheckpointType type;
+    private int[] riderIds;
+    private long[] passageTimes;
+    private int[] points;
+
+    /**
+     * Builds the standings by merging the passing order of the finished
+     * riders, read from the result block of the stage, with the running order
+     * of the riders still on the road. Both are ordered by the time since the
+     * rider's start, then by rider ID. A rider found in both, having finished
+     * while the standings were read, is listed once.
+     *
+     * @param checkpoint The checkpoint.
+     * @param column The time column of the checkpoint.
+     * @param finished The result block of the stage, or null if no rider has finished.
+     * @param onRoad The passages of the riders still on the road, in passing order.
+     * @param tables The point tables to apply.
+     */
+    public CheckpointStandings(Checkpoint checkpoint, int column, StageResults finished,
+            PassageIndex.Passage[] onRoad, PointTables tables) {
+        this.checkpointId = checkpoint.getId();
+        this.type = checkpoint.getType();
+        int[] rows = finished == null ? new int[0] : finished.rowsByPassage(column);
+        int count = rows.length + onRoad.length;
+        this.riderIds = new int[count];
+        this.passageTimes = new long[count];
+        this.points = new int[count];
+
+        int f = 0;
+        int r = 0;
+        int i = 0;
+        while (f < rows.length || r < onRoad.length) {
+            if (r < onRoad.length && finished != null && finished.contains(onRoad[r].getRiderId())) {
+                r++;
+                continue;
+            }
+            boolean takeFinished = r == onRoad.length;
+            if (f < rows.length && !takeFinished) {
+                long offset = StageResults.elapsed(finished.getTime(rows[f], 0), finished.getTime(rows[f], column));
+                takeFinished = offset < onRoad[r].getOffset() || (offset == onRoad[r].getOffset()
+                        && finished.getRiderId(rows[f]) < onRoad[r].getRiderId());
+            }
+            if (takeFinished) {
+                riderIds[i] = finished.getRiderId(rows[f]);
+                passageTimes[i] = finished.getTime(rows[f], column);
+                f++;
+            } else {
+                riderIds[i] = onRoad[r].getRiderId();
+                passageTimes[i] = onRoad[r].getTime();
+                r++;
+            }
+            points[i] = tables.getCheckpointPoints(type, i);
+            i++;
+        }
+        if (i < count) {
+            riderIds = Arrays.copyOf(riderIds, i);
+            passageTimes = Arrays.copyOf(passageTimes, i);
+            points = Arrays.copyOf(points, i);
+        }
+    }
+
+    /**
+     * Gets the ID of the checkpoint.
+     *
+     * @return The checkpoint ID.
+     */
+    public int getCheckpointId() {
+        return checkpointId;
+    }
+
+    /**
+     * Gets the type of the checkpoint. Sprint points count towards the points
+     * classification and climb points towards the mountain classification.
+     *
+     * @return The checkpoint type.
+     */
+    public CheckpointType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the riders in passing order.
+     *
+     * @return The rider IDs, first to pass first.
+     */
+    public int[] getRiderIds() {
+        return riderIds;
+    }
+
+    /**
+     * Gets the passage times in nanoseconds since midnight.
+     *
+     * @return The passage times, aligned with the riders.
+     */
+    public long[] getPassageTimes() {
+        return passageTimes;
+    }
+
+    /**
+     * Gets the points earned at the checkpoint.
+     *
+     * @return The points, aligned with the riders.
+     */
+    public int[] getPoints() {
+        return points;
+    }
+}
@@ -0,0 +1,180 @@
+package cycling;
+
+import java.time.LocalTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of computed stage and general classifications, so repeated
+ * queries between two mutations do not rank the same results again.
+ * <p>
+ * Entries are keyed by the query, the stage or race ID and its version. Any
+ * mutation of a stage bumps its version (and its race's), so stale entries are
+ * never returned; they are simply no longer read and are evicted in least
+ * recently used order once the cache is full.
+ * <p>
+ * Entries are kept in access order, so even reading an entry changes the
+ * map. Every method is therefore synchronised on the cache, letting queries
+ * read it from several threads while results are being registered.
+ */
+public class ClassificationCache {
+
+    /**
+     * The default maximum number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The kinds of cached query results.
+     */
+    private enum Query {
+        STAGE_CLASSIFICATION, ADJUSTED_TIMES, GENERAL_CLASSIFICATION
+    }
+
+    private int capacity;
+    private final Map<Key, Object> entries;
+
+    /**
+     * Constructs an empty cache with the default capacity.
+     */
+    public ClassificationCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity The maximum number of entries.
+     */
+    public ClassificationCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                return size() > ClassificationCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached classification of a stage.
+     *
+     * @param stage The stage.
+     * @return The classification, or null if it is not cached for the current version.
+     */
+    public synchronized StageClassification getStage(Stage stage) {
+        return (StageClassification) entries.get(new Key(Query.STAGE_CLASSIFICATION, stage.getId(),
+                stage.getVersion()));
+    }
+
+    /**
+     * Caches the classification of a stage at its current version.
+     *
+     * @param stage The stage.
+     * @param classification The stage classification.
+     */
+    public synchronized void putStage(Stage stage, StageClassification classification) {
+        entries.put(new Key(Query.STAGE_CLASSIFICATION, stage.getId(), stage.getVersion()), classification);
+    }
+
+    /**
+     * Gets the cached ranked adjusted elapsed times of a stage.
+     *
+     * @param stage The stage.
+     * @return The times, or null if they are not cached for the current version.
+     */
+    public synchronized LocalTime[] getAdjustedTimes(Stage stage) {
+        return (LocalTime[]) entries.get(new Key(Query.ADJUSTED_TIMES, stage.getId(), stage.getVersion()));
+    }
+
+    /**
+     * Caches the ranked adjusted elapsed times of a stage at its current version.
+     *
+     * @param stage The stage.
+     * @param times The ranked adjusted elapsed times.
+     */
+    public synchronized void putAdjustedTimes(Stage stage, LocalTime[] times) {
+        entries.put(new Key(Query.ADJUSTED_TIMES, stage.getId(), stage.getVersion()), times);
+    }
+
+    /**
+     * Gets the cached general classification of a race.
+     *
+     * @param race The race.
+     * @return The classification, or null if it is not cached for the current version.
+     */
+    public synchronized GeneralClassification getRace(Race race) {
+        return (GeneralClassification) entries.get(new Key(Query.GENERAL_CLASSIFICATION, race.getId(),
+                race.getVersion()));
+    }
+
+    /**
+     * Caches the general classification of a race at its current version.
+     *
+     * @param race The race.
+     * @param classification The general classification.
+     */
+    public synchronized void putRace(Race race, GeneralClassification classification) {
+        entries.put(new Key(Query.GENERAL_CLASSIFICATION, race.getId(), race.getVersion()), classification);
+    }
+
+    /**
+     * Sets the maximum number of entries, evicting the least recently used
+     * entries if the cache is over the new capacity.
+     *
+     * @param capacity The maximum number of entries.
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        while (entries.size() > capacity) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops every cached entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Identifies a cached query result.
+     */
+    private static final class Key {
+        private final Query query;
+        private final int id;
+        private final long version;
+
+        private Key(Query query, int id, long version) {
+            this.query = query;
+            this.id = id;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return query == other.query && id == other.id && version == other.version;
+        }
+
+        @Override
+        public int hashCode() {
+            return (query.ordinal() * 31 + id) * 31 + Long.hashCode(version);
+        }
+    }
+}
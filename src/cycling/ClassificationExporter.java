@@ -0,0 +1,150 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes stage and general classifications to a character stream, one row
+ * per rider, as CSV or newline-delimited JSON.
+ * <p>
+ * Rows are written straight from the classification arrays, so the memory
+ * used does not depend on how many races are exported. Times are written as
+ * whole milliseconds. Every row has the same columns:
+ *
+ * <pre>
+ * record,raceId,stageId,position,riderId,elapsedMs,adjustedMs,points,mountainPoints
+ * </pre>
+ *
+ * where record is {@code stage} or {@code gc}. General classification rows
+ * have no stage ID and their elapsed and adjusted times are both the total
+ * time. Positions start at 1.
+ */
+public class ClassificationExporter {
+
+    /**
+     * The output formats.
+     */
+    public enum Format {
+        /** Comma-separated values with a header line. */
+        CSV,
+        /** One JSON object per line. */
+        NDJSON
+    }
+
+    private static final String[] COLUMNS = { "record", "raceId", "stageId", "position", "riderId", "elapsedMs",
+            "adjustedMs", "points", "mountainPoints" };
+
+    private final Writer writer;
+    private final Format format;
+
+    /**
+     * Constructs an exporter writing to a stream.
+     *
+     * @param writer The stream to write to; it is neither flushed nor closed by the exporter.
+     * @param format The output format.
+     */
+    public ClassificationExporter(Writer writer, Format format) {
+        this.writer = writer;
+        this.format = format;
+    }
+
+    /**
+     * Writes the CSV header line. Nothing is written for NDJSON.
+     *
+     * @throws IOException If the stream cannot be written.
+     */
+    public void writeHeader() throws IOException {
+        if (format == Format.CSV) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Writes one row per rider classified in a stage.
+     *
+     * @param raceId The ID of the race the stage belongs to.
+     * @param classification The stage classification.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void writeStage(int raceId, StageClassification classification) throws IOException {
+        int[] riderIds = classification.getRiderIds();
+        long[] elapsedTimes = classification.getElapsedTimes();
+        long[] adjustedTimes = classification.getAdjustedElapsedTimes();
+        int[] points = classification.getPoints();
+        int[] mountainPoints = classification.getMountainPoints();
+        for (int i = 0; i < riderIds.length; i++) {
+            writeRow("stage", raceId, classification.getStageId(), i + 1, riderIds[i], elapsedTimes[i],
+                    adjustedTimes[i], points[i], mountainPoints[i]);
+        }
+    }
+
+    /**
+     * Writes one row per rider classified in the general classification of a race.
+     *
+     * @param classification The general classification.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void writeGeneral(GeneralClassification classification) throws IOException {
+        int[] riderIds = classification.getRiderIds();
+        long[] totalTimes = classification.getTotalTimes();
+        int[] points = classification.getPoints();
+        int[] mountainPoints = classification.getMountainPoints();
+        for (int i = 0; i < riderIds.length; i++) {
+            writeRow("gc", classification.getRaceId(), -1, i + 1, riderIds[i], totalTimes[i], totalTimes[i],
+                    points[i], mountainPoints[i]);
+        }
+    }
+
+    /**
+     * Writes a single row; a negative stage ID is left empty and times are
+     * given in nanoseconds.
+     */
+    private void writeRow(String record, int raceId, int stageId, int position, int riderId, long elapsedNanos,
+            long adjustedNanos, int points, int mountainPoints) throws IOException {
+        long elapsed = elapsedNanos / 1_000_000L;
+        long adjusted = adjustedNanos / 1_000_000L;
+        if (format == Format.CSV) {
+            writer.write(record);
+            writer.write(',');
+            writer.write(Integer.toString(raceId));
+            writer.write(',');
+            if (stageId >= 0) {
+                writer.write(Integer.toString(stageId));
+            }
+            writer.write(',');
+            writer.write(Integer.toString(position));
+            writer.write(',');
+            writer.write(Integer.toString(riderId));
+            writer.write(',');
+            writer.write(Long.toString(elapsed));
+            writer.write(',');
+            writer.write(Long.toString(adjusted));
+            writer.write(',');
+            writer.write(Integer.toString(points));
+            writer.write(',');
+            writer.write(Integer.toString(mountainPoints));
+        } else {
+            writer.write("{\"record\":\"");
+            writer.write(record);
+            writer.write("\",\"raceId\":");
+            writer.write(Integer.toString(raceId));
+            writer.write(",\"stageId\":");
+            writer.write(stageId >= 0 ? Integer.toString(stageId) : "null");
+            writer.write(",\"position\":");
+            writer.write(Integer.toString(position));
+            writer.write(",\"riderId\":");
+            writer.write(Integer.toString(riderId));
+            writer.write(",\"elapsedMs\":");
+            writer.write(Long.toString(elapsed));
+            writer.write(",\"adjustedMs\":");
+            writer.write(Long.toString(adjusted));
+            writer.write(",\"points\":");
+            writer.write(Integer.toString(points));
+            writer.write(",\"mountainPoints\":");
+            writer.write(Integer.toString(mountainPoints));
+            writer.write('}');
+        }
+        writer.write('\n');
+    }
+}
@@ -1,20 +1,35 @@
 package cycling;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
-public class CyclingPortalImpl implements MiniCyclingPortal {
+public class CyclingPortalImpl implements CyclingPortal {
 	private static final long serialVersionUID = 1L;
 
 	//Maps to store races, teams, riders, stages, checkpoints and results
@@ -23,9 +38,58 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 	private Map<Integer, Rider> riders = new HashMap<>();
 	private Map<Integer, Stage> stages = new HashMap<>();
 	private Map<Integer, Checkpoint> checkpoints = new HashMap<>();
-	private Map<Integer, Map<Integer, Results>> results = new HashMap<>();
-	private Map<Integer, Map<Integer, Integer>> points = new HashMap<>();
-	private Map<Integer, Map<Integer, Integer>> mountainPoints = new HashMap<>();
+	private Map<Integer, StageResults> results = new HashMap<>();
+
+	//index of the stages in which each rider has a result
+	private RiderHistoryIndex riderHistory = new RiderHistoryIndex();
+
+	//ID of each team by name, rebuilt after the portal has been deserialised
+	private transient Map<String, Integer> teamNames;
+
+	//team of each rider and the live team times of each stage
+	private Map<Integer, Integer> riderTeams = new HashMap<>();
+	private Map<Integer, TeamStageTotals> teamTotals = new HashMap<>();
+
+	//checkpoint passages of riders who have not finished a stage yet, readable
+	//while passages are being recorded
+	private Map<Integer, PassageBuffer> passages = new ConcurrentHashMap<>();
+
+	//running order at the intermediate checkpoints of each stage
+	private Map<Integer, PassageIndex> passageIndexes = new ConcurrentHashMap<>();
+
+	//append-only history of the results of each stage, and the sequence
+	//number of the last mutation recorded in it
+	private Map<Integer, ResultLog> resultLogs = new HashMap<>();
+	private long resultSequence;
+
+	//whether the times of result blocks are stored outside the Java heap
+	private boolean offHeapResults;
+
+	//whether large stage rankings are sorted on the classification pool
+	private boolean massParticipation;
+
+	//segment files of sealed races, whose results are no longer held above
+	private Map<Integer, SealedRaceSegment> sealedRaces = new HashMap<>();
+
+	//points awarded by stage finish and checkpoint position
+	private PointTables pointTables = new PointTables();
+
+	//pool computing general classifications, the common pool if not configured
+	private transient ForkJoinPool classificationPool;
+	private transient boolean sharedClassificationPool;
+
+	//stage and general classifications keyed by stage or race version
+	private transient volatile ClassificationCache classificationCache;
+
+	//general classification after each stage of a race, built on demand
+	private transient Map<Integer, GeneralClassificationPrefix> prefixTables;
+	private int resultCacheCapacity = ClassificationCache.DEFAULT_CAPACITY;
+
+	//canonical names and descriptions, possibly shared with other portals
+	private transient StringPool stringPool;
+
+	//listeners notified of ranking changes, not saved with the portal
+	private transient List<RankingListener> rankingListeners;
 
 	//counters for generating unique IDs
 	private int raceIdCounter = 1;
@@ -41,7 +105,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 
 	@Override
 	public int createRace(String name, String description) throws IllegalNameException, InvalidNameException {
-		if (name == null || name.isEmpty() || name.length() > 30 || name.contains(" ")) {
+		if (!isValidName(name)) {
 			throw new InvalidNameException("Invaldi race name");
 		}
 
@@ -49,7 +113,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		if (races.values().stream().anyMatch(race -> race.getName().equals(name))) {
 			throw new IllegalNameException();
 		}
-		Race newRace = new Race(raceIdCounter, name, description);
+		Race newRace = new Race(raceIdCounter, name, description, strings());
 		races.put(raceIdCounter, newRace);
 		return raceIdCounter++;
 	}
@@ -83,10 +147,39 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// remove the race and its related info
-		races.remove(raceId);
+		Race race = races.remove(raceId);
+		for (Stage stage : race.getStages()) {
+			for (Checkpoint checkpoint : stage.getCheckpoints()) {
+				checkpoints.remove(checkpoint.getId());
+			}
+			removeStageResults(stage);
+			stages.remove(stage.getId());
+		}
+
+		// forget the segment of a sealed race; the file itself is left in place
+		sealedRaces.remove(raceId);
 
 	}
 
+	@Override
+	public void removeRaceByName(String name) throws NameNotRecognisedException {
+
+		// find the race with the given name
+		for (Race race : races.values()) {
+			if (race.getName().equals(name)) {
+				try {
+					removeRaceById(race.getId());
+				} catch (IDNotRecognisedException e) {
+					// cannot happen, the race was just found in the map
+					throw new IllegalStateException(e);
+				}
+				return;
+			}
+		}
+
+		throw new NameNotRecognisedException("Race name not recognised");
+	}
+
 	@Override
 	public int getNumberOfStages(int raceId) throws IDNotRecognisedException {
 
@@ -116,7 +209,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Validate the stage name
-		if (stageName == null || stageName.isEmpty() || stageName.length() > 30 || stageName.contains(" ")) {
+		if (!isValidName(stageName)) {
 			throw new InvalidNameException("Invalid Stage Name");
 		}
 
@@ -128,15 +221,19 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Validate the length
-		if (length < 5) {
+		if (!isValidStageLength(length)) {
 			throw new InvalidLengthException("stage length must be less than 5");
 		}
 
 		// Create a new stage
-		Stage newStage = new Stage(stageIdCounter, stageName, description, length, startTime, type);
+		Stage newStage = new Stage(stageIdCounter, raceId, stageName, description, length, startTime, type,
+				strings());
 
-		// Add the stage to the race
+		// Add the stage to the race and the stages map
 		race.addStage(newStage);
+		race.incrementVersion();
+		prefixTables().remove(raceId);
+		stages.put(stageIdCounter, newStage);
 
 		// Return the unique ID of the created stage
 		return stageIdCounter++;
@@ -152,11 +249,8 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new IDNotRecognisedException("Id not recognised");
 		}
 
-		// retrieve the list of stage IDs
-		List<Integer> stageIds = race.getStages().stream().map(Stage::getId).collect(Collectors.toList());
-
-		// Convert the list to an array and return
-		return stageIds.stream().mapToInt(Integer::intValue).toArray();
+		// return the stage IDs, already ordered by start time
+		return race.getStageIds().clone();
 	}
 
 	@Override
@@ -174,7 +268,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 	}
 
 	@Override
-	public void removeStageById(int stageId) throws IDNotRecognisedException {
+	public void removeStageById(int stageId) throws IDNotRecognisedException, InvalidStageStateException {
 		// retrieve the stage from the map
 		Stage stage = stages.get(stageId);
 
@@ -183,13 +277,18 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new IDNotRecognisedException("Id not recognised");
 		}
 
-		// remove the stage from all races that contain it
-		for (Race race : races.values()) {
-			race.getStages().removeIf(s -> s.getId() == stageId);
+		// check if the stage belongs to an archived race
+		if (isRaceSealed(stage.getRaceId())) {
+			throw new InvalidStageStateException("Stage belongs to a sealed race.");
 		}
 
-		// remove the stage from the stages map
+		// remove the stage from its race
+		races.get(stage.getRaceId()).removeStage(stage);
+
+		// remove the stage and its result block from the maps
 		stages.remove(stageId);
+		removeStageResults(stage);
+		prefixTables().remove(stage.getRaceId());
 
 	}
 
@@ -217,16 +316,17 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// validate the location
-		if (length < 0 || length > stage.getLength()) {
+		if (!isValidLocation(location, stage.getLength())) {
 			throw new InvalidLocationException("Location is out of bounds of the stage length");
 
 		}
 
 		// create a new checkpoint
-		Checkpoint newCheckpoint = new Checkpoint(checkpointIdCounter, length, type, averageGradient);
+		Checkpoint newCheckpoint = new Checkpoint(checkpointIdCounter, stageId, location, type, averageGradient);
 
 		// add the checkpoint to the stage
 		stage.addCheckpoint(newCheckpoint);
+		stageChanged(stage);
 
 		// store the checkpoint in the checkpoints map
 		checkpoints.put(checkpointIdCounter, newCheckpoint);
@@ -260,16 +360,17 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// validate the location
-		if (location < 0 || location > stage.getLength()) {
+		if (!isValidLocation(location, stage.getLength())) {
 			throw new InvalidLocationException("Location is out of bounds of the stage length");
 
 		}
 
 		// create a new checkpoint
-		Checkpoint newCheckpoint = new Checkpoint(checkpointIdCounter, location, CheckpointType.SPRINT, 0);
+		Checkpoint newCheckpoint = new Checkpoint(checkpointIdCounter, stageId, location, CheckpointType.SPRINT, 0);
 
 		// add the checkpoint to the stage
 		stage.addCheckpoint(newCheckpoint);
+		stageChanged(stage);
 
 		// store the checkpoint in the checkpoints map
 		checkpoints.put(checkpointIdCounter, newCheckpoint);
@@ -309,6 +410,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 
 		// remove the checkpoint from the stage
 		stageContainingCheckpoint.getCheckpoints().remove(checkpoint);
+		stageChanged(stageContainingCheckpoint);
 
 		// remove the checkpoint from the checkpoints map
 		checkpoints.remove(checkpointId);
@@ -333,6 +435,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 
 		// conclude the preparation of the stage
 		stage.setWaitingForResults(true);
+		stageChanged(stage);
 
 	}
 
@@ -361,22 +464,21 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 	public int createTeam(String name, String description) throws IllegalNameException, InvalidNameException {
 
 		// validate the team name
-		if (name == null || name.isEmpty() || name.length() > 30 || name.contains(" ")) {
+		if (!isValidName(name)) {
 			throw new InvalidNameException("Invalid Team Nmae");
 		}
 
 		// Check if the team name already exists
-		for (Team team : teams.values()) {
-			if (team.getName().equals(name)) {
-				throw new IllegalNameException("team name alredy exists");
-			}
+		if (teamNames().containsKey(name)) {
+			throw new IllegalNameException("team name alredy exists");
 		}
 
 		// create a new team
-		Team newTeam = new Team(teamIdCounter, name, description);
+		Team newTeam = new Team(teamIdCounter, name, description, strings());
 
-		// add the team to the teams map
+		// add the team to the teams map and the name index
 		teams.put(teamIdCounter, newTeam);
+		teamNames().put(name, teamIdCounter);
 
 		// return the team Id and increment counter
 		return teamIdCounter++;
@@ -392,8 +494,15 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new IDNotRecognisedException("id not recognised");
 		}
 
-		// remove the team from the teams map
+		// remove the team from the teams map and the team indexes
 		teams.remove(teamId);
+		teamNames().remove(team.getName());
+		for (Rider rider : team.getRiders()) {
+			riderTeams.remove(rider.getId());
+		}
+		for (TeamStageTotals stageTotals : teamTotals.values()) {
+			stageTotals.removeTeam(teamId);
+		}
 	}
 
 	@Override
@@ -443,20 +552,21 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Create a new rider
-		Rider newRider = new Rider(riderIdCounter, name, yearOfBirth);
+		Rider newRider = new Rider(riderIdCounter, name, yearOfBirth, strings());
 
 		// Add the rider to the team
 		team.addRider(newRider);
 
-		// Store the rider in the riders map
+		// Store the rider in the riders map and index their team
 		riders.put(riderIdCounter, newRider);
+		riderTeams.put(riderIdCounter, teamID);
 
 		// return riderId and increment the counter
 		return riderIdCounter++;
 	}
 
 	@Override
-	public void removeRider(int riderId) throws IDNotRecognisedException {
+	public synchronized void removeRider(int riderId) throws IDNotRecognisedException {
 		// Retrieve the rider from the map
 		Rider rider = riders.get(riderId);
 
@@ -465,14 +575,40 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new IDNotRecognisedException("ID not recognised");
 		}
 
-		// Remove the rider from the team
-		for (Team team : teams.values()) {
+		// Remove the rider from their team
+		Team team = teams.get(riderTeams.get(riderId));
+		if (team != null) {
 			team.getRiders().removeIf(r -> r.getId() == riderId);
 		}
 
-		// Remove all results of the rider
-		for (Map<Integer, Results> stageResults : results.values()) {
-			stageResults.remove(riderId);
+		// Remove all results of the rider, visiting only the stages they have results in
+		List<RankingEvent> events = new ArrayList<>();
+		long sequence = ++resultSequence;
+		for (int stageId : riderHistory.getStages(riderId)) {
+			Stage stage = stages.get(stageId);
+			if (isRaceSealed(stage.getRaceId())) {
+				// archived results are immutable and are kept
+				continue;
+			}
+			RankingSnapshot before = snapshotRankings(stage);
+			removeResult(results.get(stageId), riderId);
+			resultLog(stageId).appendDeletion(sequence, riderId);
+			stageChanged(stage);
+			if (before != null) {
+				events.add(new RankingEvent(RankingEvent.Type.RESULT_DELETED, stage.getRaceId(), stageId, riderId,
+						before.positionOf(riderId), -1));
+				addRankingChanges(events, stage, before);
+			}
+		}
+		riderHistory.removeRider(riderId);
+		riderTeams.remove(riderId);
+		for (PassageBuffer buffer : passages.values()) {
+			removePassages(buffer, riderId);
+		}
+
+		// Notify the listeners of every result removed with the rider
+		if (!events.isEmpty()) {
+			fireRankingEvents(events);
 		}
 
 		// Remove the rider from the riders map
@@ -481,7 +617,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 	}
 
 	@Override
-	public void registerRiderResultsInStage(int stageId, int riderId, LocalTime... checkpoints)
+	public synchronized void registerRiderResultsInStage(int stageId, int riderId, LocalTime... checkpoints)
 			throws IDNotRecognisedException, DuplicatedResultException, InvalidCheckpointTimesException,
 			InvalidStageStateException {
 		// Retrieve the stage from the map
@@ -505,9 +641,14 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new InvalidStageStateException("Stage is not waiting for results.");
 		}
 
+		// Check if the results of the stage are archived
+		if (isRaceSealed(stage.getRaceId())) {
+			throw new InvalidStageStateException("Stage belongs to a sealed race.");
+		}
+
 		// Check if the rider already has a result for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
-		if (stageResults != null && stageResults.containsKey(riderId)) {
+		StageResults stageResults = results.get(stageId);
+		if (stageResults != null && stageResults.contains(riderId)) {
 			throw new DuplicatedResultException("Rider ID already has result for stage");
 		}
 
@@ -517,13 +658,184 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new InvalidCheckpointTimesException("Invalid number of checkpoint times. Expected ");
 		}
 
-		// Store the result
-		Results newResult = new Results(riderId, stageId, checkpoints);
+		// Capture the rankings before the change for the listeners
+		RankingSnapshot before = snapshotRankings(stage);
+
+		// Store the result as a new row of the stage's result block
 		if (stageResults == null) {
-			stageResults = new HashMap<>();
+			stageResults = new StageResults(stageId, expectedCheckpointTimes, offHeapResults);
 			results.put(stageId, stageResults);
 		}
-		stageResults.put(riderId, newResult);
+		stageResults.add(riderId, checkpoints);
+		logRegistration(stageResults, riderId);
+		riderHistory.add(riderId, stageId);
+		PassageBuffer buffer = passages.get(stageId);
+		if (buffer != null) {
+			removePassages(buffer, riderId);
+		}
+		Integer teamId = riderTeams.get(riderId);
+		if (teamId != null) {
+			teamTotals.computeIfAbsent(stageId, TeamStageTotals::new).add(teamId,
+					stageResults.getElapsedTime(stageResults.indexOf(riderId)));
+		}
+		stageChanged(stage);
+
+		// Notify the listeners of the new result and the rankings it changed
+		if (before != null) {
+			List<RankingEvent> events = new ArrayList<>();
+			events.add(new RankingEvent(RankingEvent.Type.RESULT_REGISTERED, stage.getRaceId(), stageId, riderId,
+					-1, classify(stage, stageResults).positionOf(riderId)));
+			addRankingChanges(events, stage, before);
+			fireRankingEvents(events);
+		}
+	}
+
+	/**
+	 * Records a single checkpoint passage of a rider as it happens. Passages are
+	 * buffered until every time of the rider (start, each checkpoint and finish)
+	 * has been recorded, at which point they are registered as the rider's
+	 * result exactly as {@link #registerRiderResultsInStage(int, int, LocalTime...)}
+	 * would.
+	 * <p>
+	 * Passages may be recorded from several threads at once. Recording, like
+	 * every registration or deletion of results, synchronises on the portal;
+	 * {@link #getRiderPartialResultsInStage(int, int)} takes no lock and reads
+	 * the concurrent passage buffers, and {@link #getStandingsAtCheckpoint(int)}
+	 * only holds the lock while reading the finished riders, so standings can
+	 * be queried while passages arrive. Races, stages and checkpoints must not
+	 * be changed while passages are being recorded.
+	 * 
+	 * @param stageId         The ID of the stage.
+	 * @param riderId         The ID of the rider.
+	 * @param checkpointIndex The index of the passage: 0 for the start, then each
+	 *                        checkpoint ordered by location, then the finish.
+	 * @param time            The time of the passage.
+	 * @return True if the passage completed the rider's result.
+	 * @throws IDNotRecognisedException        If the ID does not match to any rider
+	 *                                         or stage in the system.
+	 * @throws DuplicatedResultException       If the rider already has a result
+	 *                                         for the stage or a time for this
+	 *                                         passage.
+	 * @throws InvalidCheckpointTimesException If the index does not match any
+	 *                                         passage of the stage.
+	 * @throws InvalidStageStateException     If the stage is not "waiting for
+	 *                                         results".
+	 */
+	public synchronized boolean recordCheckpointPassage(int stageId, int riderId, int checkpointIndex,
+			LocalTime time) throws IDNotRecognisedException, DuplicatedResultException,
+			InvalidCheckpointTimesException, InvalidStageStateException {
+		// Retrieve the stage and the rider from the maps
+		Stage stage = stages.get(stageId);
+		if (stage == null) {
+			throw new IDNotRecognisedException("Stage Id not recognised");
+		}
+		if (!riders.containsKey(riderId)) {
+			throw new IDNotRecognisedException("Rider ID not recognised");
+		}
+
+		// Check if the stage is "waiting for results"
+		if (!stage.isWaitingForResults()) {
+			throw new InvalidStageStateException("Stage is not waiting for results.");
+		}
+
+		// Check if the results of the stage are archived
+		if (isRaceSealed(stage.getRaceId())) {
+			throw new InvalidStageStateException("Stage belongs to a sealed race.");
+		}
+
+		// Check if the rider has already finished the stage
+		StageResults stageResults = results.get(stageId);
+		if (stageResults != null && stageResults.contains(riderId)) {
+			throw new DuplicatedResultException("Rider ID already has result for stage");
+		}
+
+		// Validate the passage index
+		int columnCount = stage.getCheckpoints().size() + 2;
+		if (checkpointIndex < 0 || checkpointIndex >= columnCount) {
+			throw new InvalidCheckpointTimesException("Invalid checkpoint index " + checkpointIndex);
+		}
+
+		// Check if the passage has already been recorded
+		PassageBuffer buffer = passages.get(stageId);
+		if (buffer != null && buffer.hasPassage(riderId, checkpointIndex)) {
+			throw new DuplicatedResultException("Rider ID already passed checkpoint " + checkpointIndex);
+		}
+
+		// Record the passage
+		if (buffer == null) {
+			buffer = new PassageBuffer(stageId, columnCount);
+			passages.put(stageId, buffer);
+		}
+		if (!buffer.record(riderId, checkpointIndex, time)) {
+			indexPassages(stage, riderId, buffer.getTimes(riderId), checkpointIndex);
+			return false;
+		}
+
+		// Promote the completed passages to a full result, which discards them
+		registerRiderResultsInStage(stageId, riderId, buffer.getTimes(riderId));
+		return true;
+	}
+
+	/**
+	 * Get the passages recorded so far for a rider still on the road.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @param riderId The ID of the rider.
+	 * @return The times of the start, each checkpoint and the finish, with null
+	 *         for passages not recorded yet. An empty array if the rider has no
+	 *         partial result in the stage.
+	 * @throws IDNotRecognisedException If the ID does not match to any rider or
+	 *                                  stage in the system.
+	 */
+	public LocalTime[] getRiderPartialResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+		// Check if the stage and the rider exist
+		if (!stages.containsKey(stageId)) {
+			throw new IDNotRecognisedException("Stage ID not recognised.");
+		}
+		if (!riders.containsKey(riderId)) {
+			throw new IDNotRecognisedException("Rider ID not recognised.");
+		}
+
+		// Retrieve the rider's buffered passages
+		PassageBuffer buffer = passages.get(stageId);
+		LocalTime[] times = buffer == null ? null : buffer.getTimes(riderId);
+		return times == null ? new LocalTime[0] : times;
+	}
+
+	/**
+	 * Get the running order at an intermediate sprint or categorised climb,
+	 * including riders who have passed it but not finished the stage yet.
+	 * Riders still on the road are read from the concurrent passage index
+	 * without locking; finished riders are ranked from the time columns of the
+	 * stage's result block, under the portal lock, so the standings can be
+	 * queried while passages are being recorded. Riders are ordered by the
+	 * time from their start to the checkpoint, so a passage is only listed
+	 * once the rider's start has been recorded.
+	 * 
+	 * @param checkpointId The ID of the checkpoint being queried.
+	 * @return The riders in passing order with their times and points.
+	 * @throws IDNotRecognisedException If the ID does not match to any checkpoint
+	 *                                  in the system.
+	 */
+	public CheckpointStandings getStandingsAtCheckpoint(int checkpointId) throws IDNotRecognisedException {
+		// retrieve the checkpoint and its stage from the maps
+		Checkpoint checkpoint = checkpoints.get(checkpointId);
+		if (checkpoint == null) {
+			throw new IDNotRecognisedException("Id not recognised");
+		}
+		Stage stage = stages.get(checkpoint.getStageId());
+
+		// read the running order of the riders on the road from the passage index
+		int column = stage.getCheckpointsByLocation().indexOf(checkpoint) + 1;
+		PassageIndex passageIndex = passageIndexOf(stage.getId());
+		PassageIndex.Passage[] onRoad = passageIndex == null ? new PassageIndex.Passage[0]
+				: passageIndex.getPassages(column);
+
+		// merge it with the passing order of the finished riders, read afterwards
+		// so a rider finishing in between is still listed
+		synchronized (this) {
+			return new CheckpointStandings(checkpoint, column, resultsOf(stage.getId()), onRoad, pointTables);
+		}
 	}
 
 	@Override
@@ -544,27 +856,21 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new IDNotRecognisedException("Rider ID not recognised.");
 		}
 
-		// Retrieve the rider's results for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
-		if (stageResults == null || !stageResults.containsKey(riderId)) {
+		// Retrieve the rider's row in the stage's result block
+		StageResults stageResults = resultsOf(stageId);
+		int row = stageResults == null ? -1 : stageResults.indexOf(riderId);
+		if (row < 0) {
 			return new LocalTime[0]; // Return an empty array if there is no result registered for the rider in the
 										// stage
 		}
 
-		Results riderResults = stageResults.get(riderId);
-		LocalTime[] checkpointTimes = riderResults.getCheckpointTimes();
-
-		// Calculate the total elapsed time
-		LocalTime startTime = checkpointTimes[0];
-		LocalTime finishTime = checkpointTimes[checkpointTimes.length - 1];
-		LocalTime elapsedTime = finishTime.minusHours(startTime.getHour())
-				.minusMinutes(startTime.getMinute())
-				.minusSeconds(startTime.getSecond());
-
-		// Create a new array including the elapsed time
-		LocalTime[] resultWithElapsedTime = new LocalTime[checkpointTimes.length + 1];
-		System.arraycopy(checkpointTimes, 0, resultWithElapsedTime, 0, checkpointTimes.length);
-		resultWithElapsedTime[checkpointTimes.length] = elapsedTime;
+		// Copy the checkpoint times and append the elapsed time cached at registration
+		int columns = stageResults.getColumnCount();
+		LocalTime[] resultWithElapsedTime = new LocalTime[columns + 1];
+		for (int c = 0; c < columns; c++) {
+			resultWithElapsedTime[c] = StageResults.toLocalTime(stageResults.getTime(row, c));
+		}
+		resultWithElapsedTime[columns] = StageResults.toLocalTime(stageResults.getElapsedTime(row));
 
 		return resultWithElapsedTime;
 	}
@@ -588,58 +894,27 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Retrieve the rider's results for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
-		if (stageResults == null || !stageResults.containsKey(riderId)) {
+		StageResults stageResults = resultsOf(stageId);
+		if (stageResults == null || !stageResults.contains(riderId)) {
 			return null; // Return null if there is no result registered for the rider in the stage
 		}
 
-		Results riderResults = stageResults.get(riderId);
-		LocalTime[] checkpointTimes = riderResults.getCheckpointTimes();
-
-		// Calculate the real elapsed time
-		LocalTime startTime = checkpointTimes[0];
-		LocalTime finishTime = checkpointTimes[checkpointTimes.length - 1];
-		LocalTime realElapsedTime = finishTime.minusHours(startTime.getHour())
-				.minusMinutes(startTime.getMinute())
-				.minusSeconds(startTime.getSecond());
-
 		// Check if the stage is a time-trial
 		if (stage.getType() == StageType.TT) {
-			return realElapsedTime; // No adjustments for time-trials
-		}
-
-		// Retrieve and sort all finish times for the stage
-		List<LocalTime> finishTimes = new ArrayList<>();
-		for (Results result : stageResults.values()) {
-			LocalTime[] times = result.getCheckpointTimes();
-			finishTimes.add(times[times.length - 1]);
+			// No adjustments for time-trials
+			return StageResults.toLocalTime(stageResults.getElapsedTime(stageResults.indexOf(riderId)));
 		}
-		finishTimes.sort(Comparator.naturalOrder());
-
-		// Find the adjusted elapsed time
-		LocalTime adjustedElapsedTime = realElapsedTime;
-		for (int i = 0; i < finishTimes.size(); i++) {
-			LocalTime currentFinishTime = finishTimes.get(i);
-			LocalTime nextFinishTime = (i + 1 < finishTimes.size()) ? finishTimes.get(i + 1) : null;
 
-			if (currentFinishTime.equals(finishTime)) {
-				break;
-			}
+		// Find the rider in the stage classification
+		StageClassification classification = classify(stage, stageResults);
+		int position = classification.positionOf(riderId);
 
-			if (nextFinishTime != null && nextFinishTime.isBefore(finishTime.plusSeconds(1))) {
-				adjustedElapsedTime = nextFinishTime.minusHours(startTime.getHour())
-						.minusMinutes(startTime.getMinute())
-						.minusSeconds(startTime.getSecond());
-			} else {
-				break;
-			}
-		}
-
-		return adjustedElapsedTime;
+		return StageResults.toLocalTime(classification.getAdjustedElapsedTimes()[position]);
 	}
 
 	@Override
-	public void deleteRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException {
+	public synchronized void deleteRiderResultsInStage(int stageId, int riderId)
+			throws IDNotRecognisedException, InvalidStageStateException {
 		// Retrieve the stage from the map
 		Stage stage = stages.get(stageId);
 
@@ -656,18 +931,45 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			throw new IDNotRecognisedException("Rider ID not recognised");
 		}
 
+		// Check if the results of the stage are archived
+		if (isRaceSealed(stage.getRaceId())) {
+			throw new InvalidStageStateException("Stage belongs to a sealed race.");
+		}
+
 		// Retrieve the results for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
+		StageResults stageResults = results.get(stageId);
+
+		// Discard the passages of a rider who has not finished yet
+		PassageBuffer buffer = passages.get(stageId);
+		if ((stageResults == null || !stageResults.contains(riderId)) && buffer != null
+				&& removePassages(buffer, riderId)) {
+			return;
+		}
 
 		// Check if there are results for the stage and if the rider has results for the
 		// stage
-		if (stageResults == null || !stageResults.containsKey(riderId)) {
+		if (stageResults == null || !stageResults.contains(riderId)) {
 			throw new IDNotRecognisedException(
 					"No results found for Rider ID " + riderId + " in Stage ID " + stageId + ".");
 		}
 
-		// Remove the rider's results for the stage
-		stageResults.remove(riderId);
+		// Capture the rankings before the change for the listeners
+		RankingSnapshot before = snapshotRankings(stage);
+
+		// Remove the rider's row, compacting the block
+		removeResult(stageResults, riderId);
+		resultLog(stageId).appendDeletion(++resultSequence, riderId);
+		riderHistory.remove(riderId, stageId);
+		stageChanged(stage);
+
+		// Notify the listeners of the deletion and the rankings it changed
+		if (before != null) {
+			List<RankingEvent> events = new ArrayList<>();
+			events.add(new RankingEvent(RankingEvent.Type.RESULT_DELETED, stage.getRaceId(), stageId, riderId,
+					before.positionOf(riderId), -1));
+			addRankingChanges(events, stage, before);
+			fireRankingEvents(events);
+		}
 	}
 
 	@Override
@@ -681,29 +983,15 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Retrieve the results for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
+		StageResults stageResults = resultsOf(stageId);
 
 		// Check if there are results for the stage
-		if (stageResults == null || stageResults.isEmpty()) {
+		if (stageResults == null || stageResults.size() == 0) {
 			return new int[0]; // Return an empty array if there are no results for the stage
 		}
 
-		// Create a list of rider IDs sorted by their elapsed time
-		List<Map.Entry<Integer, Results>> sortedResults = new ArrayList<>(stageResults.entrySet());
-		sortedResults.sort(Comparator.comparing(entry -> {
-			LocalTime[] checkpointTimes = entry.getValue().getCheckpointTimes();
-			LocalTime startTime = checkpointTimes[0];
-			LocalTime finishTime = checkpointTimes[checkpointTimes.length - 1];
-			return finishTime.toSecondOfDay() - startTime.toSecondOfDay();
-		}));
-
-		// Extract the sorted rider IDs
-		List<Integer> sortedRiderIds = sortedResults.stream()
-				.map(Map.Entry::getKey)
-				.collect(Collectors.toList());
-
-		// Convert the list to an array and return
-		return sortedRiderIds.stream().mapToInt(Integer::intValue).toArray();
+		// Return the riders sorted by elapsed time
+		return classify(stage, stageResults).getRiderIds().clone();
 	}
 
 	@Override
@@ -717,48 +1005,90 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Retrieve the results for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
+		StageResults stageResults = resultsOf(stageId);
 
 		// Check if there are results for the stage
-		if (stageResults == null || stageResults.isEmpty()) {
+		if (stageResults == null || stageResults.size() == 0) {
 			return new LocalTime[0]; // Return an empty array if there are no results for the stage
 		}
 
-		// Create a list of rider results sorted by their finish time
-		List<Map.Entry<Integer, Results>> sortedResults = new ArrayList<>(stageResults.entrySet());
-		sortedResults.sort(Comparator.comparing(entry -> {
-			LocalTime[] checkpointTimes = entry.getValue().getCheckpointTimes();
-			LocalTime finishTime = checkpointTimes[checkpointTimes.length - 1];
-			return finishTime.toSecondOfDay();
-		}));
-
-		// Calculate adjusted elapsed times
-		List<LocalTime> adjustedElapsedTimes = new ArrayList<>();
-		LocalTime previousFinishTime = null;
-
-		for (Map.Entry<Integer, Results> entry : sortedResults) {
-			LocalTime[] checkpointTimes = entry.getValue().getCheckpointTimes();
-			LocalTime startTime = checkpointTimes[0];
-			LocalTime finishTime = checkpointTimes[checkpointTimes.length - 1];
-			LocalTime realElapsedTime = finishTime.minusHours(startTime.getHour())
-					.minusMinutes(startTime.getMinute())
-					.minusSeconds(startTime.getSecond());
-
-			// Adjusted elapsed time logic
-			LocalTime adjustedElapsedTime = realElapsedTime;
-			if (previousFinishTime != null && finishTime.isBefore(previousFinishTime.plusSeconds(1))) {
-				adjustedElapsedTime = previousFinishTime.minusHours(startTime.getHour())
-						.minusMinutes(startTime.getMinute())
-						.minusSeconds(startTime.getSecond());
-			} else {
-				previousFinishTime = finishTime;
+		// Convert the adjusted elapsed times of the classification, once per stage
+		// version, under the lock so they are cached under the version they match
+		LocalTime[] rankedTimes = cache().getAdjustedTimes(stage);
+		if (rankedTimes == null) {
+			synchronized (this) {
+				long[] adjustedElapsedTimes = classify(stage, stageResults).getAdjustedElapsedTimes();
+				rankedTimes = new LocalTime[adjustedElapsedTimes.length];
+				for (int i = 0; i < adjustedElapsedTimes.length; i++) {
+					rankedTimes[i] = StageResults.toLocalTime(adjustedElapsedTimes[i]);
+				}
+				cache().putAdjustedTimes(stage, rankedTimes);
 			}
+		}
+
+		return rankedTimes.clone();
+	}
+
+	/**
+	 * Gets a page of the riders of a stage ranked by elapsed time, so that
+	 * large stages can be browsed without copying the whole ranking.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @param offset  The position of the first rider of the page, 0 for the
+	 *                winner.
+	 * @param limit   The maximum number of riders in the page.
+	 * @return The ranked rider IDs from the offset, fewer than the limit at the
+	 *         end of the ranking.
+	 * @throws IDNotRecognisedException If the ID does not match any stage in the
+	 *                                  system.
+	 * @throws IllegalArgumentException If the offset or limit is negative.
+	 */
+	public int[] getRidersRankInStage(int stageId, int offset, int limit) throws IDNotRecognisedException {
+		// Retrieve the stage and its results
+		Stage stage = stages.get(stageId);
+		if (stage == null) {
+			throw new IDNotRecognisedException("Stage ID not recognised");
+		}
+		StageResults stageResults = resultsOf(stageId);
+		int[] riderIds = stageResults == null || stageResults.size() == 0 ? new int[0]
+				: classify(stage, stageResults).getRiderIds();
 
-			adjustedElapsedTimes.add(adjustedElapsedTime);
+		// Copy the requested page only
+		int from = pageStart(riderIds.length, offset, limit);
+		return Arrays.copyOfRange(riderIds, from, pageEnd(riderIds.length, from, limit));
+	}
+
+	/**
+	 * Gets a page of the adjusted elapsed times of a stage, aligned with
+	 * {@link #getRidersRankInStage(int, int, int)}. Only the times of the page
+	 * are converted.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @param offset  The position of the first time of the page.
+	 * @param limit   The maximum number of times in the page.
+	 * @return The ranked adjusted elapsed times from the offset.
+	 * @throws IDNotRecognisedException If the ID does not match any stage in the
+	 *                                  system.
+	 * @throws IllegalArgumentException If the offset or limit is negative.
+	 */
+	public LocalTime[] getRankedAdjustedElapsedTimesInStage(int stageId, int offset, int limit)
+			throws IDNotRecognisedException {
+		// Retrieve the stage and its results
+		Stage stage = stages.get(stageId);
+		if (stage == null) {
+			throw new IDNotRecognisedException("Stage ID  not recognised");
 		}
+		StageResults stageResults = resultsOf(stageId);
+		long[] adjustedElapsedTimes = stageResults == null || stageResults.size() == 0 ? new long[0]
+				: classify(stage, stageResults).getAdjustedElapsedTimes();
 
-		// Convert the list to an array and return
-		return adjustedElapsedTimes.toArray(new LocalTime[0]);
+		// Convert the requested page only
+		int from = pageStart(adjustedElapsedTimes.length, offset, limit);
+		LocalTime[] page = new LocalTime[pageEnd(adjustedElapsedTimes.length, from, limit) - from];
+		for (int i = 0; i < page.length; i++) {
+			page[i] = StageResults.toLocalTime(adjustedElapsedTimes[from + i]);
+		}
+		return page;
 	}
 
 	@Override
@@ -772,35 +1102,15 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Retrieve the results for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
+		StageResults stageResults = resultsOf(stageId);
 
 		// Check if there are results for the stage
-		if (stageResults == null || stageResults.isEmpty()) {
+		if (stageResults == null || stageResults.size() == 0) {
 			return new int[0]; // Return an empty array if there are no results for the stage
 		}
 
-		// Retrieve the points for the stage
-		Map<Integer, Integer> stagePoints = points.get(stageId);
-
-		// Create a list of rider results sorted by their elapsed time
-		List<Map.Entry<Integer, Results>> sortedResults = new ArrayList<>(stageResults.entrySet());
-		sortedResults.sort(Comparator.comparing(entry -> {
-			LocalTime[] checkpointTimes = entry.getValue().getCheckpointTimes();
-			LocalTime startTime = checkpointTimes[0];
-			LocalTime finishTime = checkpointTimes[checkpointTimes.length - 1];
-			return finishTime.toSecondOfDay() - startTime.toSecondOfDay();
-		}));
-
-		// Extract the points of the sorted riders
-		List<Integer> sortedPoints = new ArrayList<>();
-		for (Map.Entry<Integer, Results> entry : sortedResults) {
-			int riderId = entry.getKey();
-			int riderPoints = (stagePoints != null && stagePoints.containsKey(riderId)) ? stagePoints.get(riderId) : 0;
-			sortedPoints.add(riderPoints);
-		}
-
-		// Convert the list to an array and return
-		return sortedPoints.stream().mapToInt(Integer::intValue).toArray();
+		// Return the finish and sprint points sorted by elapsed time
+		return classify(stage, stageResults).getPoints().clone();
 	}
 
 	@Override
@@ -814,37 +1124,1717 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		}
 
 		// Retrieve the results for the stage
-		Map<Integer, Results> stageResults = results.get(stageId);
+		StageResults stageResults = resultsOf(stageId);
 
 		// Check if there are results for the stage
-		if (stageResults == null || stageResults.isEmpty()) {
+		if (stageResults == null || stageResults.size() == 0) {
 			return new int[0]; // Return an empty array if there are no results for the stage
 		}
 
-		// Retrieve the mountain points for the stage
-		Map<Integer, Integer> stageMountainPoints = mountainPoints.get(stageId);
+		// Return the climb points sorted by elapsed time
+		return classify(stage, stageResults).getMountainPoints().clone();
+	}
+
+	@Override
+	public int[] getRidersGeneralClassificationRank(int raceId) throws IDNotRecognisedException {
+		// Return the riders ranked by total adjusted elapsed time
+		return generalClassification(raceId).getRiderIds().clone();
+	}
 
-		// Create a list of rider results sorted by their elapsed time
-		List<Map.Entry<Integer, Results>> sortedResults = new ArrayList<>(stageResults.entrySet());
-		sortedResults.sort(Comparator.comparing(entry -> {
-			LocalTime[] checkpointTimes = entry.getValue().getCheckpointTimes();
-			LocalTime startTime = checkpointTimes[0];
-			LocalTime finishTime = checkpointTimes[checkpointTimes.length - 1];
-			return finishTime.toSecondOfDay() - startTime.toSecondOfDay();
-		}));
+	@Override
+	public LocalTime[] getGeneralClassificationTimesInRace(int raceId) throws IDNotRecognisedException {
+		// Convert the total adjusted elapsed times of the classification
+		long[] totalTimes = generalClassification(raceId).getTotalTimes();
+		LocalTime[] times = new LocalTime[totalTimes.length];
+		for (int i = 0; i < totalTimes.length; i++) {
+			times[i] = StageResults.toLocalTime(totalTimes[i]);
+		}
+		return times;
+	}
+
+	/**
+	 * Gets a page of the riders of a race ranked by their general
+	 * classification.
+	 * 
+	 * @param raceId The ID of the race.
+	 * @param offset The position of the first rider of the page, 0 for the
+	 *               leader.
+	 * @param limit  The maximum number of riders in the page.
+	 * @return The ranked rider IDs from the offset.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 * @throws IllegalArgumentException If the offset or limit is negative.
+	 */
+	public int[] getRidersGeneralClassificationRank(int raceId, int offset, int limit)
+			throws IDNotRecognisedException {
+		int[] riderIds = generalClassification(raceId).getRiderIds();
+		int from = pageStart(riderIds.length, offset, limit);
+		return Arrays.copyOfRange(riderIds, from, pageEnd(riderIds.length, from, limit));
+	}
 
-		// Extract the mountain points of the sorted riders
-		List<Integer> sortedMountainPoints = new ArrayList<>();
-		for (Map.Entry<Integer, Results> entry : sortedResults) {
-			int riderId = entry.getKey();
-			int riderMountainPoints = (stageMountainPoints != null && stageMountainPoints.containsKey(riderId))
-					? stageMountainPoints.get(riderId)
-					: 0;
-			sortedMountainPoints.add(riderMountainPoints);
+	/**
+	 * Gets a page of the general classification times of a race, aligned with
+	 * {@link #getRidersGeneralClassificationRank(int, int, int)}.
+	 * 
+	 * @param raceId The ID of the race.
+	 * @param offset The position of the first time of the page.
+	 * @param limit  The maximum number of times in the page.
+	 * @return The total adjusted elapsed times from the offset.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 * @throws IllegalArgumentException If the offset or limit is negative.
+	 */
+	public LocalTime[] getGeneralClassificationTimesInRace(int raceId, int offset, int limit)
+			throws IDNotRecognisedException {
+		long[] totalTimes = generalClassification(raceId).getTotalTimes();
+		int from = pageStart(totalTimes.length, offset, limit);
+		LocalTime[] page = new LocalTime[pageEnd(totalTimes.length, from, limit) - from];
+		for (int i = 0; i < page.length; i++) {
+			page[i] = StageResults.toLocalTime(totalTimes[from + i]);
+		}
+		return page;
+	}
+
+	/**
+	 * Gets the first position of a page of a ranking.
+	 * 
+	 * @param size   The length of the ranking.
+	 * @param offset The requested offset.
+	 * @param limit  The requested limit.
+	 * @return The offset, capped at the length of the ranking.
+	 * @throws IllegalArgumentException If the offset or limit is negative.
+	 */
+	private static int pageStart(int size, int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("Offset and limit must not be negative");
+		}
+		return Math.min(offset, size);
+	}
+
+	/**
+	 * Gets the position after the last entry of a page of a ranking.
+	 * 
+	 * @param size  The length of the ranking.
+	 * @param from  The first position of the page.
+	 * @param limit The maximum number of entries in the page.
+	 * @return The end of the page, capped at the length of the ranking.
+	 */
+	private static int pageEnd(int size, int from, int limit) {
+		return (int) Math.min(size, (long) from + limit);
+	}
+
+	@Override
+	public int[] getRidersPointsInRace(int raceId) throws IDNotRecognisedException {
+		// Return the summed points sorted by total adjusted elapsed time
+		return generalClassification(raceId).getPoints().clone();
+	}
+
+	@Override
+	public int[] getRidersMountainPointsInRace(int raceId) throws IDNotRecognisedException {
+		// Return the summed mountain points sorted by total adjusted elapsed time
+		return generalClassification(raceId).getMountainPoints().clone();
+	}
+
+	@Override
+	public int[] getRidersPointClassificationRank(int raceId) throws IDNotRecognisedException {
+		// Rank the classified riders by their summed points
+		GeneralClassification classification = generalClassification(raceId);
+		return classification.rankByPoints(classification.getPoints());
+	}
+
+	@Override
+	public int[] getRidersMountainPointClassificationRank(int raceId) throws IDNotRecognisedException {
+		// Rank the classified riders by their summed mountain points
+		GeneralClassification classification = generalClassification(raceId);
+		return classification.rankByPoints(classification.getMountainPoints());
+	}
+
+	/**
+	 * Get the team time classification of a stage. The time of a team is the
+	 * sum of the elapsed times of its three best riders in the stage; teams with
+	 * fewer than three riders finishing are not classified.
+	 * 
+	 * @param stageId The ID of the stage being queried.
+	 * @return The team classification of the stage.
+	 * @throws IDNotRecognisedException If the ID does not match any stage in the
+	 *                                  system.
+	 */
+	public TeamClassification getTeamClassificationInStage(int stageId) throws IDNotRecognisedException {
+		// Check if the stage exists
+		if (!stages.containsKey(stageId)) {
+			throw new IDNotRecognisedException("Stage ID not recognised");
 		}
 
-		// Convert the list to an array and return
-		return sortedMountainPoints.stream().mapToInt(Integer::intValue).toArray();
+		// Rank the teams by their maintained stage times
+		Map<Integer, Long> times = new HashMap<>();
+		TeamStageTotals stageTotals = teamTotalsOf(stageId);
+		if (stageTotals != null) {
+			for (int teamId : stageTotals.getTeamIds()) {
+				long teamTime = stageTotals.getTeamTime(teamId);
+				if (teamTime >= 0) {
+					times.put(teamId, teamTime);
+				}
+			}
+		}
+		return TeamClassification.rank(times);
+	}
+
+	/**
+	 * Get the team time classification of a race, i.e., the sum of each team's
+	 * stage times. Only teams classified in every stage with results are
+	 * included.
+	 * 
+	 * @param raceId The ID of the race being queried.
+	 * @return The team classification of the race.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 */
+	public TeamClassification getTeamClassificationInRace(int raceId) throws IDNotRecognisedException {
+		// retrieve the race from the map
+		Race race = races.get(raceId);
+
+		// check if the race exists
+		if (race == null) {
+			throw new IDNotRecognisedException("Id not recognised");
+		}
+
+		// sum the maintained stage times of each team
+		Map<Integer, Long> times = new HashMap<>();
+		Map<Integer, Integer> stageCounts = new HashMap<>();
+		int stagesWithResults = 0;
+		for (Stage stage : race.getStages()) {
+			TeamStageTotals stageTotals = teamTotalsOf(stage.getId());
+			StageResults stageResults = resultsOf(stage.getId());
+			if (stageTotals == null || stageResults == null || stageResults.size() == 0) {
+				continue;
+			}
+			stagesWithResults++;
+			for (int teamId : stageTotals.getTeamIds()) {
+				long teamTime = stageTotals.getTeamTime(teamId);
+				if (teamTime >= 0) {
+					times.merge(teamId, teamTime, Long::sum);
+					stageCounts.merge(teamId, 1, Integer::sum);
+				}
+			}
+		}
+
+		// keep the teams classified in every stage
+		final int required = stagesWithResults;
+		times.keySet().removeIf(teamId -> stageCounts.get(teamId) != required);
+		return TeamClassification.rank(times);
+	}
+
+	/**
+	 * Registers a listener notified after each mutation of stage results with
+	 * the results registered or deleted, the riders whose stage position changed
+	 * and any change of leader in the general classification.
+	 * 
+	 * @param listener The listener to add.
+	 */
+	public void addRankingListener(RankingListener listener) {
+		listeners().add(listener);
+	}
+
+	/**
+	 * Unregisters a ranking listener.
+	 * 
+	 * @param listener The listener to remove.
+	 */
+	public void removeRankingListener(RankingListener listener) {
+		listeners().remove(listener);
+	}
+
+	/**
+	 * Imports a calendar of races, stages and checkpoints in the CSV format
+	 * described by {@link CalendarImporter}. The whole calendar is validated
+	 * against the same rules as the individual creation methods before any
+	 * entity is added, so a rejected calendar leaves the portal unchanged.
+	 * 
+	 * @param reader The calendar source.
+	 * @return The IDs of the created races, in file order.
+	 * @throws IOException                If the source cannot be read.
+	 * @throws IllegalNameException       If a race name is already used, or a
+	 *                                    stage name is repeated in its race.
+	 * @throws InvalidNameException       If a race or stage name is empty, has
+	 *                                    more than 30 characters, or has white
+	 *                                    spaces.
+	 * @throws InvalidLengthException     If a stage is shorter than 5km.
+	 * @throws InvalidStageTypeException  If a time-trial stage has checkpoints.
+	 * @throws InvalidLocationException   If a checkpoint lies outside its stage.
+	 * @throws IllegalArgumentException   If a line is malformed.
+	 */
+	public int[] importCalendar(Reader reader) throws IOException, IllegalNameException, InvalidNameException,
+			InvalidLengthException, InvalidStageTypeException, InvalidLocationException {
+		// Parse the whole calendar in one pass
+		BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader) reader
+				: new BufferedReader(reader);
+		List<CalendarImporter.RaceEntry> calendar = CalendarImporter.read(buffered);
+
+		// Validate every definition before inserting anything
+		Set<String> raceNames = new HashSet<>();
+		for (Race race : races.values()) {
+			raceNames.add(race.getName());
+		}
+		for (CalendarImporter.RaceEntry race : calendar) {
+			if (!isValidName(race.name)) {
+				throw new InvalidNameException("Line " + race.line + ": invalid race name");
+			}
+			if (!raceNames.add(race.name)) {
+				throw new IllegalNameException("Line " + race.line + ": race name " + race.name + " already exists");
+			}
+			Set<String> stageNames = new HashSet<>();
+			for (CalendarImporter.StageEntry stage : race.stages) {
+				if (!isValidName(stage.name)) {
+					throw new InvalidNameException("Line " + stage.line + ": invalid stage name");
+				}
+				if (!stageNames.add(stage.name)) {
+					throw new IllegalNameException("Line " + stage.line + ": stage name " + stage.name
+							+ " already exists in the race.");
+				}
+				if (!isValidStageLength(stage.length)) {
+					throw new InvalidLengthException("Line " + stage.line + ": stage length must be at least 5");
+				}
+				if (stage.type == StageType.TT && !stage.checkpoints.isEmpty()) {
+					throw new InvalidStageTypeException("Line " + stage.checkpoints.get(0).line
+							+ ": time-trial stages cannot contain checkpoints");
+				}
+				for (CalendarImporter.CheckpointEntry checkpoint : stage.checkpoints) {
+					if (!isValidLocation(checkpoint.location, stage.length)) {
+						throw new InvalidLocationException("Line " + checkpoint.line
+								+ ": location is out of bounds of the stage length");
+					}
+				}
+			}
+		}
+
+		// Insert the entities directly, without the per-call lookups
+		int[] raceIds = new int[calendar.size()];
+		for (int r = 0; r < calendar.size(); r++) {
+			CalendarImporter.RaceEntry raceEntry = calendar.get(r);
+			Race race = new Race(raceIdCounter, raceEntry.name, raceEntry.description, strings());
+			races.put(raceIdCounter, race);
+			raceIds[r] = raceIdCounter++;
+			for (CalendarImporter.StageEntry stageEntry : raceEntry.stages) {
+				Stage stage = new Stage(stageIdCounter, race.getId(), stageEntry.name, stageEntry.description,
+						stageEntry.length, stageEntry.startTime, stageEntry.type, strings());
+				race.addStage(stage);
+				stages.put(stageIdCounter++, stage);
+				for (CalendarImporter.CheckpointEntry checkpointEntry : stageEntry.checkpoints) {
+					Checkpoint checkpoint = new Checkpoint(checkpointIdCounter, stage.getId(),
+							checkpointEntry.location, checkpointEntry.type, checkpointEntry.averageGradient);
+					stage.addCheckpoint(checkpoint);
+					checkpoints.put(checkpointIdCounter++, checkpoint);
+				}
+			}
+		}
+		return raceIds;
+	}
+
+	/**
+	 * Imports a start list of teams and their riders in one call. Every team
+	 * and rider is validated with the same rules as {@link #createTeam} and
+	 * {@link #createRider} before any is added, so a rejected start list
+	 * leaves the portal unchanged. The stores are grown once for the whole
+	 * start list.
+	 * 
+	 * @param startList The teams and riders to add.
+	 * @return The IDs of the created teams, in start list order.
+	 * @throws IllegalNameException     If a team name is already used or is
+	 *                                  repeated in the start list.
+	 * @throws InvalidNameException     If a team name is empty, has more than
+	 *                                  30 characters, or has white spaces.
+	 * @throws IllegalArgumentException If a rider name is empty or a year of
+	 *                                  birth is before 1900.
+	 */
+	public int[] importStartList(StartList startList) throws IllegalNameException, InvalidNameException {
+		// Validate every team and rider before inserting anything
+		Set<String> newNames = new HashSet<>();
+		for (StartList.TeamEntry team : startList.getTeams()) {
+			if (!isValidName(team.name)) {
+				throw new InvalidNameException("Invalid Team Nmae: " + team.name);
+			}
+			if (teamNames().containsKey(team.name) || !newNames.add(team.name)) {
+				throw new IllegalNameException("team name alredy exists: " + team.name);
+			}
+			for (int i = 0; i < team.riderNames.size(); i++) {
+				String name = team.riderNames.get(i);
+				if (name == null || name.isEmpty() || team.yearsOfBirth.get(i) < 1900) {
+					throw new IllegalArgumentException("Invalid rider name or year of birth in team " + team.name);
+				}
+			}
+		}
+
+		// Grow the stores once for the whole start list
+		teams = presized(teams, startList.getTeamCount());
+		riders = presized(riders, startList.getRiderCount());
+		riderTeams = presized(riderTeams, startList.getRiderCount());
+
+		// Insert the teams and riders
+		int[] teamIds = new int[startList.getTeamCount()];
+		int t = 0;
+		for (StartList.TeamEntry teamEntry : startList.getTeams()) {
+			Team team = new Team(teamIdCounter, teamEntry.name, teamEntry.description, strings());
+			team.ensureRiderCapacity(teamEntry.riderNames.size());
+			teams.put(teamIdCounter, team);
+			teamNames().put(teamEntry.name, teamIdCounter);
+			for (int i = 0; i < teamEntry.riderNames.size(); i++) {
+				Rider rider = new Rider(riderIdCounter, teamEntry.riderNames.get(i), teamEntry.yearsOfBirth.get(i),
+						strings());
+				team.addRider(rider);
+				riders.put(riderIdCounter, rider);
+				riderTeams.put(riderIdCounter++, team.getId());
+			}
+			teamIds[t++] = teamIdCounter++;
+		}
+		return teamIds;
+	}
+
+	/**
+	 * Registers the results of many riders in a stage, streamed from CSV in
+	 * the format read by {@link ResultImporter}. Every result is checked with
+	 * the same rules as
+	 * {@link #registerRiderResultsInStage(int, int, LocalTime...)} before any is
+	 * registered, so a rejected file leaves the stage unchanged. The results
+	 * are then added in one pass: cached classifications are invalidated once
+	 * and ranking listeners receive a single batch of events.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @param reader  The result source.
+	 * @return The number of results registered.
+	 * @throws IOException                     If the source cannot be read.
+	 * @throws IDNotRecognisedException        If the stage or a rider does not
+	 *                                         exist in the system.
+	 * @throws DuplicatedResultException       If a rider already has a result
+	 *                                         for the stage or has more than
+	 *                                         one line.
+	 * @throws InvalidCheckpointTimesException If a line does not hold one time
+	 *                                         per checkpoint plus the start and
+	 *                                         finish.
+	 * @throws InvalidStageStateException      If the stage is not "waiting for
+	 *                                         results" or its race is sealed.
+	 * @throws IllegalArgumentException        If a line is malformed.
+	 */
+	public synchronized int importStageResults(int stageId, Reader reader) throws IOException, IDNotRecognisedException,
+			DuplicatedResultException, InvalidCheckpointTimesException, InvalidStageStateException {
+		// Retrieve the stage and check its state
+		Stage stage = stages.get(stageId);
+		if (stage == null) {
+			throw new IDNotRecognisedException("Stage Id not recognised");
+		}
+		if (!stage.isWaitingForResults()) {
+			throw new InvalidStageStateException("Stage is not waiting for results.");
+		}
+		if (isRaceSealed(stage.getRaceId())) {
+			throw new InvalidStageStateException("Stage belongs to a sealed race.");
+		}
+
+		// Stream the results into a staging block
+		int columns = stage.getCheckpoints().size() + 2;
+		BufferedReader buffered = reader instanceof BufferedReader ? (BufferedReader) reader
+				: new BufferedReader(reader);
+		ResultImporter.Batch batch = ResultImporter.read(buffered, stageId, columns);
+		StageResults staged = batch.results;
+
+		// Validate every result before registering anything
+		StageResults stageResults = results.get(stageId);
+		for (int row = 0; row < staged.size(); row++) {
+			int riderId = staged.getRiderId(row);
+			if (!riders.containsKey(riderId)) {
+				throw new IDNotRecognisedException("Line " + batch.lines[row] + ": Rider ID not recognised");
+			}
+			if (stageResults != null && stageResults.contains(riderId)) {
+				throw new DuplicatedResultException("Line " + batch.lines[row]
+						+ ": Rider ID already has result for stage");
+			}
+		}
+		if (staged.size() == 0) {
+			return 0;
+		}
+
+		// Capture the rankings before the change for the listeners
+		RankingSnapshot before = snapshotRankings(stage);
+
+		// Append the staged rows to the stage's result block
+		if (stageResults == null) {
+			stageResults = new StageResults(stageId, columns, offHeapResults);
+			results.put(stageId, stageResults);
+		}
+		PassageBuffer buffer = passages.get(stageId);
+		TeamStageTotals stageTotals = teamTotals.computeIfAbsent(stageId, TeamStageTotals::new);
+		long[] times = new long[columns];
+		for (int row = 0; row < staged.size(); row++) {
+			int riderId = staged.getRiderId(row);
+			for (int c = 0; c < columns; c++) {
+				times[c] = staged.getTime(row, c);
+			}
+			stageResults.add(riderId, times);
+			logRegistration(stageResults, riderId);
+			riderHistory.add(riderId, stageId);
+			if (buffer != null) {
+				removePassages(buffer, riderId);
+			}
+			Integer teamId = riderTeams.get(riderId);
+			if (teamId != null) {
+				stageTotals.add(teamId, staged.getElapsedTime(row));
+			}
+		}
+		stageChanged(stage);
+
+		// Notify the listeners of the new results and the rankings they changed
+		if (before != null) {
+			List<RankingEvent> events = new ArrayList<>();
+			int[] ranking = classify(stage, stageResults).getRiderIds();
+			for (int i = 0; i < ranking.length; i++) {
+				if (staged.contains(ranking[i])) {
+					events.add(new RankingEvent(RankingEvent.Type.RESULT_REGISTERED, stage.getRaceId(), stageId,
+							ranking[i], -1, i));
+				}
+			}
+			addRankingChanges(events, stage, before);
+			fireRankingEvents(events);
+		}
+		return staged.size();
+	}
+
+	/**
+	 * Gets a map able to take a number of additional entries without being
+	 * rehashed, copying the given map if it may be too small. The table of a
+	 * hash map is never smaller than the least power of two that holds its
+	 * entries at the default load factor, so the map is kept when the combined
+	 * size fits under that table's threshold; otherwise the copy costs no more
+	 * than the rehash it saves.
+	 * 
+	 * @param map        The map.
+	 * @param additional The number of entries about to be added.
+	 * @return The map itself, or a larger copy of it.
+	 */
+	private static <K, V> Map<K, V> presized(Map<K, V> map, int additional) {
+		// find the smallest table the map can have
+		long capacity = 1;
+		while (capacity * 0.75f < map.size()) {
+			capacity <<= 1;
+		}
+		if ((long) map.size() + additional <= (long) (capacity * 0.75f)) {
+			return map;
+		}
+		Map<K, V> copy = new HashMap<>((int) ((map.size() + additional) / 0.75f) + 1);
+		copy.putAll(map);
+		return copy;
+	}
+
+	/**
+	 * Gets the index of team IDs by name, building it after the portal has
+	 * been deserialised.
+	 * 
+	 * @return The team name index.
+	 */
+	private Map<String, Integer> teamNames() {
+		if (teamNames == null) {
+			teamNames = new HashMap<>();
+			for (Team team : teams.values()) {
+				teamNames.put(team.getName(), team.getId());
+			}
+		}
+		return teamNames;
+	}
+
+	/**
+	 * Exports the stage classifications and the general classification of a
+	 * race, one row per rider, in the format described by
+	 * {@link ClassificationExporter}.
+	 * 
+	 * @param raceId The ID of the race.
+	 * @param writer The stream to write to; it is flushed but not closed.
+	 * @param format The output format.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 * @throws IOException              If the stream cannot be written.
+	 */
+	public void exportRace(int raceId, Writer writer, ClassificationExporter.Format format)
+			throws IDNotRecognisedException, IOException {
+		// Retrieve the race from the map
+		Race race = races.get(raceId);
+
+		// Check if the race exists
+		if (race == null) {
+			throw new IDNotRecognisedException("Id not recognised");
+		}
+
+		ClassificationExporter exporter = new ClassificationExporter(writer, format);
+		exporter.writeHeader();
+		exportRace(race, exporter);
+		writer.flush();
+	}
+
+	/**
+	 * Exports the stage classifications and the general classification of a
+	 * race to a byte channel, encoded in UTF-8.
+	 * 
+	 * @param raceId  The ID of the race.
+	 * @param channel The channel to write to; it is not closed.
+	 * @param format  The output format.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 * @throws IOException              If the channel cannot be written.
+	 */
+	public void exportRace(int raceId, WritableByteChannel channel, ClassificationExporter.Format format)
+			throws IDNotRecognisedException, IOException {
+		exportRace(raceId, channelWriter(channel), format);
+	}
+
+	/**
+	 * Exports the classifications of every race in the portal, in race ID
+	 * order. Races are classified and written one at a time, so the export
+	 * runs in memory proportional to the largest race.
+	 * 
+	 * @param writer The stream to write to; it is flushed but not closed.
+	 * @param format The output format.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	public void exportArchive(Writer writer, ClassificationExporter.Format format) throws IOException {
+		ClassificationExporter exporter = new ClassificationExporter(writer, format);
+		exporter.writeHeader();
+		int[] raceIds = getRaceIds();
+		Arrays.sort(raceIds);
+		for (int raceId : raceIds) {
+			exportRace(races.get(raceId), exporter);
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Exports the classifications of every race in the portal to a byte
+	 * channel, encoded in UTF-8.
+	 * 
+	 * @param channel The channel to write to; it is not closed.
+	 * @param format  The output format.
+	 * @throws IOException If the channel cannot be written.
+	 */
+	public void exportArchive(WritableByteChannel channel, ClassificationExporter.Format format) throws IOException {
+		exportArchive(channelWriter(channel), format);
+	}
+
+	/**
+	 * Writes the rows of every stage of a race followed by its general
+	 * classification.
+	 * 
+	 * @param race     The race.
+	 * @param exporter The exporter to write with.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	private void exportRace(Race race, ClassificationExporter exporter) throws IOException {
+		for (Stage stage : race.getStages()) {
+			StageResults stageResults = resultsOf(stage.getId());
+			if (stageResults != null && stageResults.size() > 0) {
+				exporter.writeStage(race.getId(), classify(stage, stageResults));
+			}
+		}
+		exporter.writeGeneral(classifyRaces(List.of(race)).get(race.getId()));
+	}
+
+	/**
+	 * Wraps a byte channel in a buffered UTF-8 writer.
+	 * 
+	 * @param channel The channel.
+	 * @return The writer; closing it would close the channel.
+	 */
+	private static Writer channelWriter(WritableByteChannel channel) {
+		return new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Checks whether a race, stage or team name is not empty, has at most 30
+	 * characters and no white space.
+	 * 
+	 * @param name The name.
+	 * @return True if the name is valid.
+	 */
+	static boolean isValidName(String name) {
+		return name != null && !name.isEmpty() && name.length() <= 30 && !name.contains(" ");
+	}
+
+	/**
+	 * Checks whether a stage is long enough, i.e., at least 5km.
+	 * 
+	 * @param length The length of the stage in kilometers.
+	 * @return True if the length is valid.
+	 */
+	static boolean isValidStageLength(double length) {
+		return length >= 5;
+	}
+
+	/**
+	 * Checks whether a checkpoint lies within its stage.
+	 * 
+	 * @param location    The location of the checkpoint in kilometers.
+	 * @param stageLength The length of the stage in kilometers.
+	 * @return True if the location is valid.
+	 */
+	static boolean isValidLocation(double location, double stageLength) {
+		return location >= 0 && location <= stageLength;
+	}
+
+	/**
+	 * Sets the number of worker threads used to compute general classifications.
+	 * By default the common fork/join pool is used.
+	 * 
+	 * @param parallelism The number of worker threads.
+	 * @throws IllegalArgumentException If the parallelism is not positive.
+	 */
+	public void setClassificationParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+
+		// replace the pool, letting the previous one finish its work
+		ForkJoinPool previous = classificationPool;
+		classificationPool = new ForkJoinPool(parallelism);
+		if (previous != null && !sharedClassificationPool) {
+			previous.shutdown();
+		}
+		sharedClassificationPool = false;
+	}
+
+	/**
+	 * Computes general classifications on a pool shared with other portals.
+	 * The portal never shuts a shared pool down.
+	 * 
+	 * @param pool The shared pool, or null to use the common pool.
+	 */
+	public void setClassificationPool(ForkJoinPool pool) {
+		if (classificationPool != null && !sharedClassificationPool) {
+			classificationPool.shutdown();
+		}
+		classificationPool = pool;
+		sharedClassificationPool = pool != null;
+	}
+
+	/**
+	 * Computes the general classification of several races at once. The stages
+	 * of every race are classified concurrently on the classification pool.
+	 * 
+	 * @param raceIds The IDs of the races.
+	 * @return The general classification of each race, keyed by race ID.
+	 * @throws IDNotRecognisedException If an ID does not match any race in the
+	 *                                  system.
+	 */
+	public Map<Integer, GeneralClassification> computeGeneralClassifications(int... raceIds)
+			throws IDNotRecognisedException {
+		// retrieve every race before computing any of them
+		List<Race> batch = new ArrayList<>(raceIds.length);
+		for (int raceId : raceIds) {
+			Race race = races.get(raceId);
+			if (race == null) {
+				throw new IDNotRecognisedException("Id not recognised");
+			}
+			batch.add(race);
+		}
+
+		return classifyRaces(batch);
+	}
+
+	/**
+	 * Sets the maximum number of query results kept in the classification
+	 * cache. The least recently used results are evicted first.
+	 * 
+	 * @param capacity The maximum number of cached results.
+	 * @throws IllegalArgumentException If the capacity is not positive.
+	 */
+	public void setResultCacheCapacity(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		resultCacheCapacity = capacity;
+		cache().setCapacity(capacity);
+	}
+
+	/**
+	 * Checks if result times are kept outside the Java heap.
+	 * 
+	 * @return True if result times are stored off-heap.
+	 */
+	public boolean isOffHeapResults() {
+		return offHeapResults;
+	}
+
+	/**
+	 * Chooses whether result times are kept outside the Java heap, both in the
+	 * result blocks and in the result histories. Off-heap blocks keep only
+	 * their rider IDs on the heap, so large archives of results no longer
+	 * grow the heap or lengthen garbage collection pauses. The
+	 * existing blocks and histories are moved immediately; those of sealed
+	 * races keep the storage they were sealed with.
+	 * 
+	 * @param offHeap True to store result times off-heap.
+	 */
+	public void setOffHeapResults(boolean offHeap) {
+		offHeapResults = offHeap;
+		for (StageResults stageResults : results.values()) {
+			stageResults.setOffHeap(offHeap);
+		}
+		for (ResultLog resultLog : resultLogs.values()) {
+			resultLog.setOffHeap(offHeap);
+		}
+	}
+
+	/**
+	 * Tunes the portal for mass-participation events such as gran fondos,
+	 * where a single stage has 30,000 to 50,000 finishers. In this mode the
+	 * rankings of stages with at least {@link RankingSort#PARALLEL_THRESHOLD}
+	 * results are sorted on the classification pool. Results are best fed with
+	 * {@link #importStageResults(int, Reader)} and rankings read a page at a
+	 * time, e.g. with {@link #getRidersRankInStage(int, int, int)}.
+	 * <p>
+	 * The targets for a stage of 50,000 riders, checked by the
+	 * MassParticipationBenchmark program, are:
+	 * <ul>
+	 * <li>streaming import of at least 100,000 results per second;</li>
+	 * <li>the first stage ranking after the results change within 200ms;</li>
+	 * <li>the general classification of a three-stage race within 500ms;</li>
+	 * <li>a page of 100 ranked riders or times within 1ms once the ranking
+	 * is computed.</li>
+	 * </ul>
+	 * 
+	 * @param enabled True to enable the mode.
+	 */
+	public void setMassParticipation(boolean enabled) {
+		massParticipation = enabled;
+	}
+
+	/**
+	 * Checks if the portal is tuned for mass-participation events.
+	 * 
+	 * @return True if the mode is enabled.
+	 */
+	public boolean isMassParticipation() {
+		return massParticipation;
+	}
+
+	/**
+	 * Sets the pool from which entity names and descriptions are taken, e.g.
+	 * to share it between several portals. The strings of the entities
+	 * already in the portal are moved to the new pool.
+	 * 
+	 * @param pool The string pool.
+	 */
+	public void setStringPool(StringPool pool) {
+		stringPool = pool;
+		internStrings();
+	}
+
+	/**
+	 * Gets a copy of the point tables used by every classification.
+	 * 
+	 * @return The point tables.
+	 */
+	public PointTables getPointTables() {
+		return new PointTables(pointTables);
+	}
+
+	/**
+	 * Replaces the point tables used by every classification. Cached
+	 * classifications are dropped; call {@link #recomputeAll(int, RecomputeListener)}
+	 * to rebuild them eagerly.
+	 * 
+	 * @param tables The new point tables.
+	 */
+	public void setPointTables(PointTables tables) {
+		pointTables = new PointTables(tables);
+		cache().clear();
+		prefixTables().clear();
+	}
+
+	/**
+	 * Recomputes the stage and general classifications of every race in the
+	 * portal and caches them, so subsequent queries are answered from the cache.
+	 * Races are processed in batches whose stages are classified in parallel.
+	 * 
+	 * @param batchSize The number of races classified concurrently.
+	 * @param listener  Notified after each batch, or null.
+	 * @throws IllegalArgumentException If the batch size is not positive.
+	 */
+	public void recomputeAll(int batchSize, RecomputeListener listener) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+
+		// drop everything computed under the previous rules
+		cache().clear();
+
+		// stream the races through the pool one batch at a time
+		List<Race> allRaces = new ArrayList<>(races.values());
+		for (int from = 0; from < allRaces.size(); from += batchSize) {
+			int to = Math.min(from + batchSize, allRaces.size());
+			classifyRaces(allRaces.subList(from, to));
+			if (listener != null) {
+				listener.racesRecomputed(to, allRaces.size());
+			}
+		}
+	}
+
+	/**
+	 * Gets the sequence number of the last mutation of any result. Results
+	 * are numbered in the order they are registered or deleted, so the
+	 * number can be passed back to the time-travel queries later on.
+	 * 
+	 * @return The current result sequence number, 0 before any result.
+	 */
+	public long getResultSequence() {
+		return resultSequence;
+	}
+
+	/**
+	 * Computes the general classification of a race as it stood right after
+	 * a result mutation, using the current stages and point tables. Results
+	 * of stages removed since are not taken into account.
+	 * 
+	 * @param raceId   The ID of the race.
+	 * @param sequence A result sequence number.
+	 * @return The general classification at that point.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 */
+	public GeneralClassification getGeneralClassificationAt(int raceId, long sequence)
+			throws IDNotRecognisedException {
+		// Retrieve the race from the map
+		Race race = races.get(raceId);
+
+		// Check if the race exists
+		if (race == null) {
+			throw new IDNotRecognisedException("Id not recognised");
+		}
+
+		// Replay the history of each stage up to the sequence number
+		List<StageClassification> classifications = new ArrayList<>();
+		RiderSlots riderSlots = new RiderSlots();
+		for (Stage stage : race.getStages()) {
+			ResultLog resultLog = resultLogOf(stage.getId());
+			if (resultLog != null) {
+				StageResults stageResults = resultLog.replay(sequence);
+				if (stageResults.size() > 0) {
+					StageClassification classification = StageClassification.compute(stage, stageResults,
+							pointTables);
+					riderSlots.addAll(classification.getRiderIds());
+					classifications.add(classification);
+				}
+			}
+		}
+
+		// Sum the replayed stages over the riders taking part in them
+		GeneralClassification.Totals totals = new GeneralClassification.Totals(riderSlots);
+		for (StageClassification classification : classifications) {
+			totals.add(classification);
+		}
+		return GeneralClassification.fromTotals(raceId, totals);
+	}
+
+	/**
+	 * Gets the general classification of a race counting only a stage and
+	 * the stages before it in start time order, with their current results.
+	 * The totals after each stage are kept in a per-race prefix table, so
+	 * repeated queries only rank the riders of one row.
+	 * 
+	 * @param stageId The ID of the last stage to count.
+	 * @return The general classification after that stage.
+	 * @throws IDNotRecognisedException If the ID does not match any stage in the
+	 *                                  system.
+	 */
+	public GeneralClassification getGeneralClassificationAfterStage(int stageId) throws IDNotRecognisedException {
+		// Retrieve the stage from the map
+		Stage lastStage = stages.get(stageId);
+
+		// Check if the stage exists
+		if (lastStage == null) {
+			throw new IDNotRecognisedException("Stage ID not recognised");
+		}
+
+		// Read the totals after the stage from the prefix table of the race
+		Race race = races.get(lastStage.getRaceId());
+		int row = prefixTable(race, -1).indexOf(stageId);
+		return prefixTable(race, row).classificationAfter(row);
+	}
+
+	/**
+	 * Gets the riders ranked by general classification as it stood right
+	 * after a result mutation.
+	 * 
+	 * @param raceId   The ID of the race.
+	 * @param sequence A result sequence number.
+	 * @return The rider IDs sorted by total adjusted elapsed time.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 */
+	public int[] getRidersGeneralClassificationRankAt(int raceId, long sequence) throws IDNotRecognisedException {
+		return getGeneralClassificationAt(raceId, sequence).getRiderIds().clone();
+	}
+
+	/**
+	 * Gets the riders ranked by points classification as it stood right after
+	 * a result mutation.
+	 * 
+	 * @param raceId   The ID of the race.
+	 * @param sequence A result sequence number.
+	 * @return The rider IDs sorted by summed points.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 */
+	public int[] getRidersPointClassificationRankAt(int raceId, long sequence) throws IDNotRecognisedException {
+		GeneralClassification classification = getGeneralClassificationAt(raceId, sequence);
+		return classification.rankByPoints(classification.getPoints());
+	}
+
+	/**
+	 * Gets the riders ranked by mountain points classification as it stood
+	 * right after a result mutation.
+	 * 
+	 * @param raceId   The ID of the race.
+	 * @param sequence A result sequence number.
+	 * @return The rider IDs sorted by summed mountain points.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 */
+	public int[] getRidersMountainPointClassificationRankAt(int raceId, long sequence)
+			throws IDNotRecognisedException {
+		GeneralClassification classification = getGeneralClassificationAt(raceId, sequence);
+		return classification.rankByPoints(classification.getMountainPoints());
+	}
+
+	/**
+	 * Seals a concluded race: its result blocks are frozen together with every
+	 * stage, team and general classification computed from them and written
+	 * to a segment file. The results are then dropped from the portal, which
+	 * only keeps the file name and reads the segment back on first query.
+	 * <p>
+	 * Results of a sealed race can no longer be registered, deleted or
+	 * changed by removing a rider, and its stages can no longer be removed:
+	 * registering, importing, recording or deleting results and removing a
+	 * stage all throw {@link InvalidStageStateException}, while removing a
+	 * rider keeps their sealed results.
+	 * Classifications of a sealed race use the point tables in force when it
+	 * was sealed.
+	 * 
+	 * @param raceId   The ID of the race.
+	 * @param filename Location of the segment file.
+	 * @throws IDNotRecognisedException   If the ID does not match any race in the
+	 *                                    system.
+	 * @throws InvalidStageStateException If a stage of the race is still under
+	 *                                    preparation.
+	 * @throws IOException                If the segment file cannot be written.
+	 */
+	public void sealRace(int raceId, String filename)
+			throws IDNotRecognisedException, InvalidStageStateException, IOException {
+		// Retrieve the race from the map
+		Race race = races.get(raceId);
+
+		// Check if the race exists
+		if (race == null) {
+			throw new IDNotRecognisedException("Id not recognised");
+		}
+
+		// Check if the race is already sealed
+		if (sealedRaces.containsKey(raceId)) {
+			throw new IllegalStateException("Race is already sealed");
+		}
+
+		// Check that every stage has been concluded
+		for (Stage stage : race.getStages()) {
+			if (!stage.isWaitingForResults()) {
+				throw new InvalidStageStateException("Stage is not waiting for results.");
+			}
+		}
+
+		// Precompute every classification of the race
+		GeneralClassification generalClassification = classifyRaces(List.of(race)).get(raceId);
+		Map<Integer, StageResults> raceResults = new HashMap<>();
+		Map<Integer, StageClassification> classifications = new HashMap<>();
+		Map<Integer, TeamStageTotals> raceTeamTotals = new HashMap<>();
+		Map<Integer, PassageIndex> racePassageIndexes = new HashMap<>();
+		Map<Integer, ResultLog> raceResultLogs = new HashMap<>();
+		for (Stage stage : race.getStages()) {
+			StageResults stageResults = results.get(stage.getId());
+			if (stageResults == null) {
+				continue;
+			}
+			raceResults.put(stage.getId(), stageResults);
+			classifications.put(stage.getId(), classify(stage, stageResults));
+			if (teamTotals.containsKey(stage.getId())) {
+				raceTeamTotals.put(stage.getId(), teamTotals.get(stage.getId()));
+			}
+			if (passageIndexes.containsKey(stage.getId())) {
+				racePassageIndexes.put(stage.getId(), passageIndexes.get(stage.getId()));
+			}
+			if (resultLogs.containsKey(stage.getId())) {
+				raceResultLogs.put(stage.getId(), resultLogs.get(stage.getId()));
+			}
+		}
+
+		// Write the segment before dropping anything from the portal
+		SealedRace sealedRace = new SealedRace(raceId, raceResults, classifications, raceTeamTotals,
+				racePassageIndexes, raceResultLogs, generalClassification);
+		sealedRace.write(filename);
+
+		// Replace the live results by the segment; unfinished passages are discarded
+		for (Stage stage : race.getStages()) {
+			results.remove(stage.getId());
+			teamTotals.remove(stage.getId());
+			passageIndexes.remove(stage.getId());
+			passages.remove(stage.getId());
+			resultLogs.remove(stage.getId());
+		}
+		sealedRaces.put(raceId, new SealedRaceSegment(filename, sealedRace));
+	}
+
+	/**
+	 * Checks whether a race has been sealed.
+	 * 
+	 * @param raceId The ID of the race.
+	 * @return True if the race is sealed.
+	 */
+	public boolean isRaceSealed(int raceId) {
+		return sealedRaces.containsKey(raceId);
+	}
+
+	/**
+	 * Computes the general classification of a race.
+	 * 
+	 * @param raceId The ID of the race.
+	 * @return The general classification.
+	 * @throws IDNotRecognisedException If the ID does not match any race in the
+	 *                                  system.
+	 */
+	private GeneralClassification generalClassification(int raceId) throws IDNotRecognisedException {
+		// retrieve the race from the map
+		Race race = races.get(raceId);
+
+		// check if the race exists
+		if (race == null) {
+			throw new IDNotRecognisedException("Id not recognised");
+		}
+
+		return classifyRaces(List.of(race)).get(raceId);
+	}
+
+	/**
+	 * Computes and caches the general classifications of a batch of races.
+	 * Races already cached are returned directly; the others are submitted to
+	 * the classification pool before any of them is joined. Missing races are
+	 * computed under the portal lock, so their results are not changed while
+	 * they are read and the classifications are cached under the versions
+	 * they match.
+	 * 
+	 * @param batch The races to classify.
+	 * @return The general classification of each race, keyed by race ID.
+	 */
+	private Map<Integer, GeneralClassification> classifyRaces(List<Race> batch) {
+		Map<Integer, GeneralClassification> classifications = new HashMap<>();
+		List<Race> missing = new ArrayList<>();
+
+		// read the sealed and cached races
+		for (Race race : batch) {
+			SealedRaceSegment segment = sealedRaces.get(race.getId());
+			if (segment != null) {
+				classifications.put(race.getId(), segment.get().getGeneralClassification());
+				continue;
+			}
+			GeneralClassification cached = cache().getRace(race);
+			if (cached != null) {
+				classifications.put(race.getId(), cached);
+			} else {
+				missing.add(race);
+			}
+		}
+		if (missing.isEmpty()) {
+			return classifications;
+		}
+
+		synchronized (this) {
+			// submit a task for each race missing from the cache
+			Map<Integer, GeneralClassificationTask> tasks = new HashMap<>();
+			for (Race race : missing) {
+				GeneralClassificationTask task = generalClassificationTask(race);
+				tasks.put(race.getId(), task);
+				pool().execute(task);
+			}
+
+			// join each task and cache its stage and race classifications
+			for (Map.Entry<Integer, GeneralClassificationTask> entry : tasks.entrySet()) {
+				GeneralClassificationTask task = entry.getValue();
+				GeneralClassification classification = GeneralClassification.fromTotals(entry.getKey(),
+						task.join());
+				StageClassification[] classified = task.getClassified();
+				for (int i = 0; i < classified.length; i++) {
+					if (classified[i] != null) {
+						cache().putStage(task.getStages().get(i), classified[i]);
+					}
+				}
+				cache().putRace(races.get(entry.getKey()), classification);
+				classifications.put(entry.getKey(), classification);
+			}
+		}
+		return classifications;
+	}
+
+	/**
+	 * Creates the fork/join task summing the stage classifications of a race,
+	 * seeded with the stage classifications already cached.
+	 * 
+	 * @param race The race.
+	 * @return The task, not yet submitted.
+	 */
+	private GeneralClassificationTask generalClassificationTask(Race race) {
+		List<Stage> raceStages = new ArrayList<>(race.getStages());
+		List<StageResults> raceResults = new ArrayList<>(raceStages.size());
+		StageClassification[] classified = new StageClassification[raceStages.size()];
+		RiderSlots riderSlots = new RiderSlots();
+		for (int i = 0; i < raceStages.size(); i++) {
+			Stage stage = raceStages.get(i);
+			StageResults stageResults = results.get(stage.getId());
+			raceResults.add(stageResults);
+			classified[i] = cache().getStage(stage);
+
+			// number the riders of the race before the task shares the numbering
+			if (stageResults != null) {
+				for (int row = 0; row < stageResults.size(); row++) {
+					riderSlots.add(stageResults.getRiderId(row));
+				}
+			}
+		}
+		return new GeneralClassificationTask(raceStages, raceResults, classified, pointTables, riderSlots);
+	}
+
+	/**
+	 * Gets the results of a rider in every stage they have a result in, in the
+	 * order the results were registered.
+	 * 
+	 * @param riderId The ID of the rider.
+	 * @return The rider's results.
+	 * @throws IDNotRecognisedException If the ID does not match any rider in the
+	 *                                  system.
+	 */
+	public RiderHistory getRiderResultsAcrossStages(int riderId) throws IDNotRecognisedException {
+		// Check if the rider exists
+		if (!riders.containsKey(riderId)) {
+			throw new IDNotRecognisedException("Rider ID not recognised.");
+		}
+
+		return riderHistory(riderId, riderHistory.getStages(riderId), -1);
+	}
+
+	/**
+	 * Gets the results of a rider in the stages of one race.
+	 * 
+	 * @param riderId The ID of the rider.
+	 * @param raceId  The ID of the race.
+	 * @return The rider's results in the race.
+	 * @throws IDNotRecognisedException If the ID does not match any rider or race
+	 *                                  in the system.
+	 */
+	public RiderHistory getRiderResultsInRace(int riderId, int raceId) throws IDNotRecognisedException {
+		// Check if the rider and the race exist
+		if (!riders.containsKey(riderId)) {
+			throw new IDNotRecognisedException("Rider ID not recognised.");
+		}
+		if (!races.containsKey(raceId)) {
+			throw new IDNotRecognisedException("Id not recognised");
+		}
+
+		return riderHistory(riderId, riderHistory.getStages(riderId), raceId);
+	}
+
+	/**
+	 * Copies the results of a rider out of the result blocks of some stages.
+	 * 
+	 * @param riderId  The ID of the rider.
+	 * @param stageIds The stages in which the rider has a result.
+	 * @param raceId   The race to restrict the stages to, or -1 for all races.
+	 * @return The rider's results.
+	 */
+	private RiderHistory riderHistory(int riderId, int[] stageIds, int raceId) {
+		int count = 0;
+		int[] selected = new int[stageIds.length];
+		long[] elapsedTimes = new long[stageIds.length];
+		long[][] checkpointTimes = new long[stageIds.length][];
+		for (int stageId : stageIds) {
+			if (raceId >= 0 && stages.get(stageId).getRaceId() != raceId) {
+				continue;
+			}
+			StageResults stageResults = resultsOf(stageId);
+			int row = stageResults.indexOf(riderId);
+			long[] times = new long[stageResults.getColumnCount()];
+			for (int c = 0; c < times.length; c++) {
+				times[c] = stageResults.getTime(row, c);
+			}
+			selected[count] = stageId;
+			elapsedTimes[count] = stageResults.getElapsedTime(row);
+			checkpointTimes[count] = times;
+			count++;
+		}
+		return new RiderHistory(riderId, Arrays.copyOf(selected, count), Arrays.copyOf(elapsedTimes, count),
+				Arrays.copyOf(checkpointTimes, count));
+	}
+
+	/**
+	 * Removes the result of a rider from a result block, keeping the team
+	 * times of the stage up to date.
+	 * 
+	 * @param stageResults The result block of the stage.
+	 * @param riderId      The ID of the rider.
+	 */
+	private void removeResult(StageResults stageResults, int riderId) {
+		int row = stageResults.indexOf(riderId);
+		long elapsedTime = stageResults.getElapsedTime(row);
+		stageResults.remove(riderId);
+
+		Integer teamId = riderTeams.get(riderId);
+		TeamStageTotals stageTotals = teamTotals.get(stageResults.getStageId());
+		if (teamId != null && stageTotals != null) {
+			stageTotals.remove(teamId, elapsedTime, stageResults, riderTeams);
+		}
+	}
+
+	/**
+	 * Discards the buffered passages of a rider along with their index entries.
+	 * 
+	 * @param buffer  The passage buffer of the stage.
+	 * @param riderId The ID of the rider.
+	 * @return True if the rider had buffered passages.
+	 */
+	private boolean removePassages(PassageBuffer buffer, int riderId) {
+		LocalTime[] times = buffer.getTimes(riderId);
+		PassageIndex passageIndex = passageIndexes.get(buffer.getStageId());
+		if (times != null && times[0] != null && passageIndex != null) {
+			long start = StageResults.toNanos(times[0]);
+			for (int c = 1; c < times.length - 1; c++) {
+				if (times[c] != null) {
+					passageIndex.remove(riderId, c, start, StageResults.toNanos(times[c]));
+				}
+			}
+		}
+		return buffer.remove(riderId);
+	}
+
+	/**
+	 * Indexes a newly buffered passage of a rider. Passages are keyed by the
+	 * time since the rider's start, so they are only indexed once the start
+	 * is known: recording the start indexes every intermediate passage
+	 * buffered before it.
+	 * 
+	 * @param stage   The stage.
+	 * @param riderId The ID of the rider.
+	 * @param times   The buffered times of the rider.
+	 * @param column  The time column of the new passage.
+	 */
+	private void indexPassages(Stage stage, int riderId, LocalTime[] times, int column) {
+		if (times[0] == null) {
+			return;
+		}
+		PassageIndex passageIndex = passageIndex(stage);
+		long start = StageResults.toNanos(times[0]);
+		for (int c = 1; c < times.length - 1; c++) {
+			if (times[c] != null && (column == 0 || column == c)) {
+				passageIndex.add(riderId, c, start, StageResults.toNanos(times[c]));
+			}
+		}
+	}
+
+	/**
+	 * Gets the passage index of a stage, creating it on first use.
+	 * 
+	 * @param stage The stage.
+	 * @return The passage index.
+	 */
+	private PassageIndex passageIndex(Stage stage) {
+		return passageIndexes.computeIfAbsent(stage.getId(),
+				stageId -> new PassageIndex(stageId, stage.getCheckpoints().size() + 2));
+	}
+
+	/**
+	 * Gets the sealed race a stage belongs to.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @return The sealed race, or null if the stage is not part of one.
+	 */
+	private SealedRace sealedRaceOf(int stageId) {
+		Stage stage = stages.get(stageId);
+		SealedRaceSegment segment = stage == null ? null : sealedRaces.get(stage.getRaceId());
+		return segment == null ? null : segment.get();
+	}
+
+	/**
+	 * Gets the result block of a stage, live or sealed.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @return The result block, or null if the stage has no results.
+	 */
+	private StageResults resultsOf(int stageId) {
+		StageResults stageResults = results.get(stageId);
+		if (stageResults == null) {
+			SealedRace sealedRace = sealedRaceOf(stageId);
+			stageResults = sealedRace == null ? null : sealedRace.getResults(stageId);
+		}
+		return stageResults;
+	}
+
+	/**
+	 * Gets the team times of a stage, live or sealed.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @return The team times, or null if the stage has no results.
+	 */
+	private TeamStageTotals teamTotalsOf(int stageId) {
+		TeamStageTotals stageTotals = teamTotals.get(stageId);
+		if (stageTotals == null) {
+			SealedRace sealedRace = sealedRaceOf(stageId);
+			stageTotals = sealedRace == null ? null : sealedRace.getTeamTotals(stageId);
+		}
+		return stageTotals;
+	}
+
+	/**
+	 * Gets the checkpoint running orders of a stage, live or sealed.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @return The passage index, or null if no passage was recorded.
+	 */
+	private PassageIndex passageIndexOf(int stageId) {
+		PassageIndex passageIndex = passageIndexes.get(stageId);
+		if (passageIndex == null) {
+			SealedRace sealedRace = sealedRaceOf(stageId);
+			passageIndex = sealedRace == null ? null : sealedRace.getPassageIndex(stageId);
+		}
+		return passageIndex;
+	}
+
+	/**
+	 * Gets the result history of a stage, live or sealed.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @return The result history, or null if no result was ever registered.
+	 */
+	private ResultLog resultLogOf(int stageId) {
+		ResultLog resultLog = resultLogs.get(stageId);
+		if (resultLog == null) {
+			SealedRace sealedRace = sealedRaceOf(stageId);
+			resultLog = sealedRace == null ? null : sealedRace.getResultLog(stageId);
+		}
+		return resultLog;
+	}
+
+	/**
+	 * Gets the live result history of a stage, creating it on first use.
+	 * 
+	 * @param stageId The ID of the stage.
+	 * @return The result history.
+	 */
+	private ResultLog resultLog(int stageId) {
+		return resultLogs.computeIfAbsent(stageId,
+				id -> new ResultLog(id, stages.get(id).getCheckpoints().size() + 2, offHeapResults));
+	}
+
+	/**
+	 * Appends a newly registered result to the history of its stage under a
+	 * new sequence number.
+	 * 
+	 * @param stageResults The result block holding the result.
+	 * @param riderId      The ID of the rider.
+	 */
+	private void logRegistration(StageResults stageResults, int riderId) {
+		resultLog(stageResults.getStageId()).appendRegistration(++resultSequence, stageResults,
+				stageResults.indexOf(riderId));
+	}
+
+	/**
+	 * Drops the result block of a removed stage along with its index entries.
+	 * 
+	 * @param stage The removed stage.
+	 */
+	private void removeStageResults(Stage stage) {
+		StageResults stageResults = results.remove(stage.getId());
+		if (stageResults == null) {
+			stageResults = resultsOf(stage.getId());
+		}
+		teamTotals.remove(stage.getId());
+		passages.remove(stage.getId());
+		passageIndexes.remove(stage.getId());
+		resultLogs.remove(stage.getId());
+		if (stageResults != null) {
+			for (int row = 0; row < stageResults.size(); row++) {
+				riderHistory.remove(stageResults.getRiderId(row), stage.getId());
+			}
+		}
+		stageChanged(stage);
+	}
+
+	/**
+	 * Gets the pool used to compute general classifications.
+	 * 
+	 * @return The configured pool, or the common pool if none was set.
+	 */
+	private ForkJoinPool pool() {
+		return classificationPool != null ? classificationPool : ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Marks a stage and its race as changed, so cached classifications computed
+	 * from their previous state are no longer read.
+	 * 
+	 * @param stage The stage that changed.
+	 */
+	private void stageChanged(Stage stage) {
+		stage.incrementVersion();
+		Race race = races.get(stage.getRaceId());
+		if (race != null) {
+			race.incrementVersion();
+		}
+
+		// only the general classifications from this stage onwards are affected
+		GeneralClassificationPrefix prefixTable = prefixTables().get(stage.getRaceId());
+		if (prefixTable != null) {
+			int row = prefixTable.indexOf(stage.getId());
+			if (row < 0) {
+				prefixTables().remove(stage.getRaceId());
+			} else {
+				prefixTable.invalidateFrom(row);
+			}
+		}
+	}
+
+	/**
+	 * Gets the general classification prefix tables, creating the map after
+	 * the portal has been deserialised.
+	 * 
+	 * @return The prefix tables keyed by race ID.
+	 */
+	private Map<Integer, GeneralClassificationPrefix> prefixTables() {
+		if (prefixTables == null) {
+			prefixTables = new HashMap<>();
+		}
+		return prefixTables;
+	}
+
+	/**
+	 * Gets the prefix table of a race brought up to date up to a row. Rows
+	 * still valid are reused; the following ones are rebuilt from the cached
+	 * stage classifications.
+	 * 
+	 * @param race The race.
+	 * @param row  The last row needed.
+	 * @return The prefix table.
+	 */
+	private GeneralClassificationPrefix prefixTable(Race race, int row) {
+		GeneralClassificationPrefix prefixTable = prefixTables().computeIfAbsent(race.getId(),
+				raceId -> new GeneralClassificationPrefix(raceId, race.getStageIds()));
+
+		while (prefixTable.getValidRows() <= row) {
+			Stage stage = stages.get(prefixTable.getStageId(prefixTable.getValidRows()));
+			StageResults stageResults = resultsOf(stage.getId());
+			prefixTable.appendRow(stageResults == null || stageResults.size() == 0 ? null
+					: classify(stage, stageResults));
+		}
+		return prefixTable;
+	}
+
+	/**
+	 * Gets the cache of computed classifications, creating it after the portal
+	 * has been deserialised. Concurrent queries all get the same cache.
+	 * 
+	 * @return The classification cache.
+	 */
+	private ClassificationCache cache() {
+		ClassificationCache cache = classificationCache;
+		if (cache == null) {
+			synchronized (this) {
+				if (classificationCache == null) {
+					classificationCache = new ClassificationCache(resultCacheCapacity);
+				}
+				cache = classificationCache;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Gets the classification of a stage from the cache, computing it from the
+	 * result block if needed. A cached classification is read without
+	 * locking; a missing one is computed under the portal lock, so the result
+	 * block is not read while results are being registered.
+	 * 
+	 * @param stage        The stage.
+	 * @param stageResults The result block of the stage.
+	 * @return The stage classification.
+	 */
+	private StageClassification classify(Stage stage, StageResults stageResults) {
+		// sealed races keep their precomputed classifications
+		SealedRace sealedRace = sealedRaceOf(stage.getId());
+		if (sealedRace != null) {
+			return sealedRace.getStageClassification(stage.getId());
+		}
+
+		StageClassification classification = cache().getStage(stage);
+		if (classification == null) {
+			synchronized (this) {
+				classification = cache().getStage(stage);
+				if (classification == null) {
+					classification = StageClassification.compute(stage, stageResults, pointTables,
+							massParticipation ? pool() : null);
+					cache().putStage(stage, classification);
+				}
+			}
+		}
+		return classification;
+	}
+
+	/**
+	 * Gets the pool of entity names and descriptions, creating it after the
+	 * portal has been deserialised.
+	 * 
+	 * @return The string pool.
+	 */
+	private StringPool strings() {
+		if (stringPool == null) {
+			stringPool = new StringPool();
+		}
+		return stringPool;
+	}
+
+	/**
+	 * Replaces the names and descriptions of every entity by their pooled
+	 * instances.
+	 */
+	private void internStrings() {
+		StringPool pool = strings();
+		races.values().forEach(race -> race.internStrings(pool));
+		stages.values().forEach(stage -> stage.internStrings(pool));
+		teams.values().forEach(team -> team.internStrings(pool));
+		riders.values().forEach(rider -> rider.internStrings(pool));
+	}
+
+	/**
+	 * Gets the ranking listeners, creating the list after the portal has been
+	 * deserialised.
+	 * 
+	 * @return The ranking listeners.
+	 */
+	private List<RankingListener> listeners() {
+		if (rankingListeners == null) {
+			rankingListeners = new CopyOnWriteArrayList<>();
+		}
+		return rankingListeners;
+	}
+
+	/**
+	 * Captures the stage ranking and race leader before a mutation.
+	 * 
+	 * @param stage The stage about to change.
+	 * @return The snapshot, or null if nobody is listening.
+	 */
+	private RankingSnapshot snapshotRankings(Stage stage) {
+		if (listeners().isEmpty()) {
+			return null;
+		}
+		return new RankingSnapshot(stageRanking(stage), generalClassificationLeader(stage.getRaceId()));
+	}
+
+	/**
+	 * Compares the current rankings with a snapshot and appends the differences.
+	 * 
+	 * @param events The events to append to.
+	 * @param stage  The stage that changed.
+	 * @param before The rankings before the change.
+	 */
+	private void addRankingChanges(List<RankingEvent> events, Stage stage, RankingSnapshot before) {
+		// find the previous position of each rider
+		Map<Integer, Integer> oldPositions = new HashMap<>();
+		for (int i = 0; i < before.stageRanking.length; i++) {
+			oldPositions.put(before.stageRanking[i], i);
+		}
+
+		// report every rider ranked at another position
+		int[] after = stageRanking(stage);
+		for (int i = 0; i < after.length; i++) {
+			Integer oldPosition = oldPositions.remove(after[i]);
+			if (oldPosition != null && oldPosition != i) {
+				events.add(new RankingEvent(RankingEvent.Type.RANK_CHANGED, stage.getRaceId(), stage.getId(),
+						after[i], oldPosition, i));
+			}
+		}
+
+		// report the change of race leader
+		int leader = generalClassificationLeader(stage.getRaceId());
+		if (leader != before.leader) {
+			events.add(new RankingEvent(RankingEvent.Type.GC_LEADER_CHANGED, stage.getRaceId(), -1, leader, -1,
+					-1));
+		}
+	}
+
+	/**
+	 * Notifies every ranking listener of a batch of events.
+	 * 
+	 * @param events The events caused by one mutation.
+	 */
+	private void fireRankingEvents(List<RankingEvent> events) {
+		List<RankingEvent> batch = Collections.unmodifiableList(events);
+		for (RankingListener listener : listeners()) {
+			listener.rankingsChanged(batch);
+		}
+	}
+
+	/**
+	 * Gets the current ranking of a stage.
+	 * 
+	 * @param stage The stage.
+	 * @return The rider IDs sorted by elapsed time.
+	 */
+	private int[] stageRanking(Stage stage) {
+		StageResults stageResults = resultsOf(stage.getId());
+		if (stageResults == null || stageResults.size() == 0) {
+			return new int[0];
+		}
+		return classify(stage, stageResults).getRiderIds();
+	}
+
+	/**
+	 * Gets the current leader of the general classification of a race. The
+	 * leader is read from a cached classification if there is one, otherwise
+	 * from the last row of the race's prefix table, so after a mutation only
+	 * the rows from the changed stage onwards are summed again and no full
+	 * classification is ranked.
+	 * 
+	 * @param raceId The ID of the race.
+	 * @return The ID of the leader, or -1 if no rider is classified.
+	 */
+	private int generalClassificationLeader(int raceId) {
+		Race race = races.get(raceId);
+		GeneralClassification cached = sealedRaces.containsKey(raceId) ? classifyRaces(List.of(race)).get(raceId)
+				: cache().getRace(race);
+		if (cached != null) {
+			int[] riderIds = cached.getRiderIds();
+			return riderIds.length == 0 ? -1 : riderIds[0];
+		}
+		int lastRow = race.getStages().size() - 1;
+		return lastRow < 0 ? -1 : prefixTable(race, lastRow).leaderAfter(lastRow);
+	}
+
+	/**
+	 * The stage ranking and race leader captured before a mutation.
+	 */
+	private static class RankingSnapshot {
+		private final int[] stageRanking;
+		private final int leader;
+
+		private RankingSnapshot(int[] stageRanking, int leader) {
+			this.stageRanking = stageRanking;
+			this.leader = leader;
+		}
+
+		private int positionOf(int riderId) {
+			for (int i = 0; i < stageRanking.length; i++) {
+				if (stageRanking[i] == riderId) {
+					return i;
+				}
+			}
+			return -1;
+		}
 	}
 
 	@Override
@@ -854,9 +2844,19 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 		teams.clear();
 		riders.clear();
 		stages.clear();
+		checkpoints.clear();
 		results.clear();
-		points.clear();
-		mountainPoints.clear();
+		riderHistory.clear();
+		riderTeams.clear();
+		teamTotals.clear();
+		passages.clear();
+		passageIndexes.clear();
+		sealedRaces.clear();
+		prefixTables().clear();
+		resultLogs.clear();
+		resultSequence = 0;
+		teamNames = null;
+		cache().clear();
 
 		// Reset all counters
 		raceIdCounter = 1;
@@ -870,7 +2870,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 	@Override
 	public void saveCyclingPortal(String filename) throws IOException {
 		// Create an object output stream to write the data to the file
-		try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filename))) {
+		try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
 			// Write the current state of the CyclingPortal to the file
 			oos.writeObject(this);
 		} catch (IOException e) {
@@ -883,7 +2883,7 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 	@Override
 	public void loadCyclingPortal(String filename) throws IOException, ClassNotFoundException {
 		// Create an object input stream to read the data from the file
-		try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filename))) {
+		try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
 			// Read the CyclingPortalImpl object from the file
 			CyclingPortalImpl loadedPortal = (CyclingPortalImpl) ois.readObject();
 
@@ -892,9 +2892,37 @@ public class CyclingPortalImpl implements MiniCyclingPortal {
 			this.teams = loadedPortal.teams;
 			this.riders = loadedPortal.riders;
 			this.stages = loadedPortal.stages;
+			// Rebuild the checkpoint index from the loaded stages
+			this.checkpoints = new HashMap<>();
+			for (Stage stage : stages.values()) {
+				for (Checkpoint checkpoint : stage.getCheckpoints()) {
+					checkpoints.put(checkpoint.getId(), checkpoint);
+				}
+			}
 			this.results = loadedPortal.results;
-			this.points = loadedPortal.points;
-			this.mountainPoints = loadedPortal.mountainPoints;
+			this.riderHistory = loadedPortal.riderHistory;
+			this.riderTeams = loadedPortal.riderTeams;
+			this.teamTotals = loadedPortal.teamTotals;
+			this.passages = new ConcurrentHashMap<>(loadedPortal.passages);
+			// Rebuild the passage indexes from the riders still on the road
+			this.passageIndexes = new ConcurrentHashMap<>();
+			for (PassageBuffer buffer : passages.values()) {
+				for (int riderId : buffer.getRiderIds()) {
+					indexPassages(stages.get(buffer.getStageId()), riderId, buffer.getTimes(riderId), 0);
+				}
+			}
+			this.sealedRaces = loadedPortal.sealedRaces;
+			this.resultLogs = loadedPortal.resultLogs;
+			this.resultSequence = loadedPortal.resultSequence;
+			this.offHeapResults = loadedPortal.offHeapResults;
+			this.massParticipation = loadedPortal.massParticipation;
+			internStrings();
+			this.teamNames = null;
+			this.pointTables = loadedPortal.pointTables;
+			this.resultCacheCapacity = loadedPortal.resultCacheCapacity;
+			cache().clear();
+			cache().setCapacity(resultCacheCapacity);
+			prefixTables().clear();
 			this.raceIdCounter = loadedPortal.raceIdCounter;
 			this.teamIdCounter = loadedPortal.teamIdCounter;
 			this.riderIdCounter = loadedPortal.riderIdCounter;
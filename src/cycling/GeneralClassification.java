@@ -0,0 +1,235 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The general classification of a race: riders ranked by the sum of their
+ * adjusted elapsed times over every stage with results, together with their
+ * summed points and mountain points. All arrays are aligned with the ranking.
+ * <p>
+ * Only riders with a result in every stage that has results are classified,
+ * and riders with equal total times are ranked by rider ID.
+ */
+public class GeneralClassification implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int raceId;
+    private int[] riderIds;
+    private long[] totalTimes;
+    private int[] points;
+    private int[] mountainPoints;
+
+    private GeneralClassification(int raceId, int[] riderIds, long[] totalTimes, int[] points,
+            int[] mountainPoints) {
+        this.raceId = raceId;
+        this.riderIds = riderIds;
+        this.totalTimes = totalTimes;
+        this.points = points;
+        this.mountainPoints = mountainPoints;
+    }
+
+    /**
+     * Builds the classification from per-rider totals.
+     *
+     * @param raceId The ID of the race.
+     * @param totals The per-rider totals summed over the stages.
+     * @return The general classification.
+     */
+    public static GeneralClassification fromTotals(int raceId, Totals totals) {
+        // keep the riders that finished every stage with results
+        int classified = 0;
+        int[] candidates = new int[totals.stageCounts.length];
+        int[] candidateSlots = new int[totals.stageCounts.length];
+        long[] candidateTimes = new long[totals.stageCounts.length];
+        for (int slot = 0; slot < totals.stageCounts.length; slot++) {
+            if (totals.stagesWithResults > 0 && totals.stageCounts[slot] == totals.stagesWithResults) {
+                candidates[classified] = totals.slots.getRiderId(slot);
+                candidateSlots[classified] = slot;
+                candidateTimes[classified++] = totals.times[slot];
+            }
+        }
+        int[] order = RankingSort.rank(candidateTimes, candidates, classified);
+
+        int[] riderIds = new int[classified];
+        long[] totalTimes = new long[classified];
+        int[] points = new int[classified];
+        int[] mountainPoints = new int[classified];
+        for (int i = 0; i < classified; i++) {
+            int slot = candidateSlots[order[i]];
+            riderIds[i] = candidates[order[i]];
+            totalTimes[i] = candidateTimes[order[i]];
+            points[i] = totals.points[slot];
+            mountainPoints[i] = totals.mountainPoints[slot];
+        }
+        return new GeneralClassification(raceId, riderIds, totalTimes, points, mountainPoints);
+    }
+
+    /**
+     * Gets the ID of the race.
+     *
+     * @return The race ID.
+     */
+    public int getRaceId() {
+        return raceId;
+    }
+
+    /**
+     * Gets the rider IDs ranked by total adjusted elapsed time.
+     *
+     * @return The ranked rider IDs.
+     */
+    public int[] getRiderIds() {
+        return riderIds;
+    }
+
+    /**
+     * Gets the total adjusted elapsed times in nanoseconds, aligned with the ranking.
+     *
+     * @return The total times.
+     */
+    public long[] getTotalTimes() {
+        return totalTimes;
+    }
+
+    /**
+     * Gets the total points of each rider, aligned with the ranking.
+     *
+     * @return The points.
+     */
+    public int[] getPoints() {
+        return points;
+    }
+
+    /**
+     * Gets the total mountain points of each rider, aligned with the ranking.
+     *
+     * @return The mountain points.
+     */
+    public int[] getMountainPoints() {
+        return mountainPoints;
+    }
+
+    /**
+     * Ranks the classified riders by descending points, ties broken by their
+     * general classification position.
+     *
+     * @param riderPoints The points aligned with the ranking.
+     * @return The rider IDs, most points first.
+     */
+    public int[] rankByPoints(int[] riderPoints) {
+        long[] keys = new long[riderIds.length];
+        for (int i = 0; i < riderIds.length; i++) {
+            keys[i] = ((long) (Integer.MAX_VALUE - riderPoints[i]) << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] ranked = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ranked[i] = riderIds[(int) keys[i]];
+        }
+        return ranked;
+    }
+
+    /**
+     * Per-rider totals accumulated over the stages of a race, indexed by the
+     * riders' slots in a numbering of the race's participants.
+     */
+    public static class Totals {
+        private final RiderSlots slots;
+        private long[] times;
+        private int[] points;
+        private int[] mountainPoints;
+        private int[] stageCounts;
+        private int stagesWithResults;
+
+        /**
+         * Constructs empty totals for the riders numbered so far.
+         *
+         * @param slots The numbering of the riders of the race.
+         */
+        public Totals(RiderSlots slots) {
+            this.slots = slots;
+            this.times = new long[slots.size()];
+            this.points = new int[slots.size()];
+            this.mountainPoints = new int[slots.size()];
+            this.stageCounts = new int[slots.size()];
+        }
+
+        /**
+         * Constructs a copy of other totals, extended to the riders numbered
+         * since they were constructed.
+         *
+         * @param other The totals to copy.
+         */
+        public Totals(Totals other) {
+            this.slots = other.slots;
+            this.times = Arrays.copyOf(other.times, slots.size());
+            this.points = Arrays.copyOf(other.points, slots.size());
+            this.mountainPoints = Arrays.copyOf(other.mountainPoints, slots.size());
+            this.stageCounts = Arrays.copyOf(other.stageCounts, slots.size());
+            this.stagesWithResults = other.stagesWithResults;
+        }
+
+        /**
+         * Adds the classification of one stage to the totals. Riders numbered
+         * after the totals were constructed are ignored.
+         *
+         * @param stage The stage classification.
+         */
+        public void add(StageClassification stage) {
+            if (stage.size() == 0) {
+                return;
+            }
+            int[] stageRiders = stage.getRiderIds();
+            long[] adjusted = stage.getAdjustedElapsedTimes();
+            int[] stagePoints = stage.getPoints();
+            int[] stageMountainPoints = stage.getMountainPoints();
+            for (int i = 0; i < stageRiders.length; i++) {
+                int slot = slots.slotOf(stageRiders[i]);
+                if (slot >= 0 && slot < times.length) {
+                    times[slot] += adjusted[i];
+                    points[slot] += stagePoints[i];
+                    mountainPoints[slot] += stageMountainPoints[i];
+                    stageCounts[slot]++;
+                }
+            }
+            stagesWithResults++;
+        }
+
+        /**
+         * Gets the rider the classification built from these totals would rank
+         * first, without ranking the other riders.
+         *
+         * @return The ID of the leader, or -1 if no rider is classified.
+         */
+        public int leader() {
+            int leader = -1;
+            long leaderTime = Long.MAX_VALUE;
+            for (int slot = 0; slot < stageCounts.length; slot++) {
+                if (stagesWithResults > 0 && stageCounts[slot] == stagesWithResults) {
+                    int riderId = slots.getRiderId(slot);
+                    if (times[slot] < leaderTime || (times[slot] == leaderTime && riderId < leader)) {
+                        leader = riderId;
+                        leaderTime = times[slot];
+                    }
+                }
+            }
+            return leader;
+        }
+
+        /**
+         * Merges other totals of the same numbering and size into these totals.
+         *
+         * @param other The totals to merge.
+         */
+        public void merge(Totals other) {
+            for (int slot = 0; slot < times.length; slot++) {
+                times[slot] += other.times[slot];
+                points[slot] += other.points[slot];
+                mountainPoints[slot] += other.mountainPoints[slot];
+                stageCounts[slot] += other.stageCounts[slot];
+            }
+            stagesWithResults += other.stagesWithResults;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cycling;
+
+/**
+ * Prefix table of the general classification of a race: row k holds the
+ * per-rider totals summed over the first k + 1 stages in start time order,
+ * so the general classification after any stage is read from a single row.
+ * <p>
+ * When the results of a stage change, only the rows from that stage onwards
+ * are invalidated; they are rebuilt from the previous row on the next query.
+ * The table is bound to the list of stages it was built for and must be
+ * dropped when a stage is added to or removed from the race.
+ * <p>
+ * The rows are indexed by a numbering of the riders met in the stages so far,
+ * extended as rows are appended, so a row only holds slots for riders with a
+ * result in the race.
+ */
+public class GeneralClassificationPrefix {
+
+    private final int raceId;
+    private final int[] stageIds;
+    private final GeneralClassification.Totals[] rows;
+    private RiderSlots slots = new RiderSlots();
+    private int validRows;
+
+    /**
+     * Constructs an empty table.
+     *
+     * @param raceId The ID of the race.
+     * @param stageIds The IDs of the stages of the race in start time order.
+     */
+    public GeneralClassificationPrefix(int raceId, int[] stageIds) {
+        this.raceId = raceId;
+        this.stageIds = stageIds.clone();
+        this.rows = new GeneralClassification.Totals[stageIds.length];
+    }
+
+    /**
+     * Gets the number of stages, i.e., rows, in the table.
+     *
+     * @return The number of stages.
+     */
+    public int getStageCount() {
+        return stageIds.length;
+    }
+
+    /**
+     * Gets the ID of the stage of a row.
+     *
+     * @param row The row index.
+     * @return The stage ID.
+     */
+    public int getStageId(int row) {
+        return stageIds[row];
+    }
+
+    /**
+     * Gets the row of a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @return The row index, or -1 if the stage is not in the table.
+     */
+    public int indexOf(int stageId) {
+        for (int row = 0; row < stageIds.length; row++) {
+            if (stageIds[row] == stageId) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the number of leading rows that are up to date.
+     *
+     * @return The number of valid rows.
+     */
+    public int getValidRows() {
+        return validRows;
+    }
+
+    /**
+     * Marks a row and every row after it as out of date.
+     *
+     * @param row The first row to invalidate.
+     */
+    public void invalidateFrom(int row) {
+        validRows = Math.min(validRows, row);
+        if (validRows == 0) {
+            // start numbering afresh, dropping riders whose results were deleted
+            slots = new RiderSlots();
+        }
+    }
+
+    /**
+     * Rebuilds the first invalid row from the row before it.
+     *
+     * @param classification The classification of the row's stage, or null if it has no results.
+     */
+    public void appendRow(StageClassification classification) {
+        if (classification != null) {
+            slots.addAll(classification.getRiderIds());
+        }
+        GeneralClassification.Totals totals = validRows == 0 ? new GeneralClassification.Totals(slots)
+                : new GeneralClassification.Totals(rows[validRows - 1]);
+        if (classification != null) {
+            totals.add(classification);
+        }
+        rows[validRows++] = totals;
+    }
+
+    /**
+     * Gets the general classification after the stage of a valid row.
+     *
+     * @param row The row index.
+     * @return The general classification counting the stages up to that row.
+     */
+    public GeneralClassification classificationAfter(int row) {
+        if (row >= validRows) {
+            throw new IllegalStateException("Row " + row + " is not up to date");
+        }
+        return GeneralClassification.fromTotals(raceId, rows[row]);
+    }
+
+    /**
+     * Gets the leader of the general classification after the stage of a
+     * valid row, without ranking the other riders.
+     *
+     * @param row The row index.
+     * @return The ID of the leader, or -1 if no rider is classified.
+     */
+    public int leaderAfter(int row) {
+        if (row >= validRows) {
+            throw new IllegalStateException("Row " + row + " is not up to date");
+        }
+        return rows[row].leader();
+    }
+}
@@ -0,0 +1,97 @@
+package cycling;
+
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork/join task deriving the adjusted elapsed times and points of a range of
+ * stages and summing them per rider. Each stage is classified independently,
+ * so the range is split until a single stage remains.
+ * <p>
+ * Stage classifications are read from and written to a shared array with one
+ * slot per stage, so already classified stages are reused and the caller can
+ * cache the ones computed by the task. The per-rider totals are indexed by a
+ * numbering of the race's riders built before the task runs, which the
+ * subtasks only read.
+ */
+public class GeneralClassificationTask extends RecursiveTask<GeneralClassification.Totals> {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Stage> stages;
+    private final List<StageResults> results;
+    private final StageClassification[] classified;
+    private final PointTables tables;
+    private final RiderSlots riderSlots;
+    private final int from;
+    private final int to;
+
+    /**
+     * Constructs a task over all the given stages.
+     *
+     * @param stages The stages of the race.
+     * @param results The result block of each stage, aligned with the stages.
+     * @param classified The classification of each stage, aligned with the stages;
+     *                   null slots are computed and filled in by the task.
+     * @param tables The point tables to apply.
+     * @param riderSlots The numbering of the riders with a result in any of the stages.
+     */
+    public GeneralClassificationTask(List<Stage> stages, List<StageResults> results,
+            StageClassification[] classified, PointTables tables, RiderSlots riderSlots) {
+        this(stages, results, classified, tables, riderSlots, 0, stages.size());
+    }
+
+    private GeneralClassificationTask(List<Stage> stages, List<StageResults> results,
+            StageClassification[] classified, PointTables tables, RiderSlots riderSlots, int from, int to) {
+        this.stages = stages;
+        this.results = results;
+        this.classified = classified;
+        this.tables = tables;
+        this.riderSlots = riderSlots;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Gets the stages classified by the task.
+     *
+     * @return The stages, aligned with the classifications.
+     */
+    public List<Stage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Gets the classification of each stage, filled in once the task completes.
+     *
+     * @return The stage classifications, null for stages without results.
+     */
+    public StageClassification[] getClassified() {
+        return classified;
+    }
+
+    @Override
+    protected GeneralClassification.Totals compute() {
+        // classify a single stage directly
+        if (to - from <= 1) {
+            GeneralClassification.Totals totals = new GeneralClassification.Totals(riderSlots);
+            if (from < to && results.get(from) != null) {
+                if (classified[from] == null) {
+                    classified[from] = StageClassification.compute(stages.get(from), results.get(from), tables);
+                }
+                totals.add(classified[from]);
+            }
+            return totals;
+        }
+
+        // otherwise split the range in two and merge the halves
+        int middle = (from + to) >>> 1;
+        GeneralClassificationTask left = new GeneralClassificationTask(stages, results, classified, tables,
+                riderSlots, from, middle);
+        GeneralClassificationTask right = new GeneralClassificationTask(stages, results, classified, tables,
+                riderSlots, middle, to);
+        left.fork();
+        GeneralClassification.Totals totals = right.compute();
+        totals.merge(left.join());
+        return totals;
+    }
+}
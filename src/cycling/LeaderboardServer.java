@@ -0,0 +1,335 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded Server-Sent Events endpoint pushing leaderboard changes of a
+ * portal to connected spectators.
+ * <p>
+ * Clients connect to {@code /stages/{stageId}} to receive stage rank deltas or
+ * to {@code /races/{raceId}} to receive general classification rank deltas
+ * and leader changes. Each connection first receives the current ranking,
+ * then only the riders whose position changed. Changes arriving between two
+ * flushes are coalesced, so each subscribed stage or race produces at most
+ * one update per interval however many results are registered.
+ * <p>
+ * Rankings are read from the portal while holding its monitor, the lock its
+ * result mutators hold while they notify listeners, so the initial ranking
+ * of a connection is never torn by a concurrent registration and no change
+ * is missed between the ranking and the first update. Other threads querying
+ * the portal while the server runs must synchronise on it as well. Events
+ * are written to the sockets outside the portal's and the server's locks,
+ * each client's writes being serialised on its own stream, so a slow client
+ * never holds up a mutation.
+ */
+public class LeaderboardServer implements RankingListener {
+
+    private final CyclingPortalImpl portal;
+    private final HttpServer server;
+    private final ScheduledExecutorService flusher;
+    private final long intervalMillis;
+
+    private final Map<Integer, List<OutputStream>> stageClients = new HashMap<>();
+    private final Map<Integer, List<OutputStream>> raceClients = new HashMap<>();
+    private final Map<Integer, Map<Integer, Integer>> pendingStageMoves = new HashMap<>();
+    private final Map<Integer, Integer> pendingLeaders = new HashMap<>();
+    private final Set<Integer> pendingRaces = new HashSet<>();
+    private final Map<Integer, int[]> raceRankings = new HashMap<>();
+
+    /**
+     * Constructs a server for a portal. The server does not accept connections
+     * until {@link #start()} is called.
+     *
+     * @param portal The portal whose rankings are pushed.
+     * @param port The port to listen on, 0 for any free port.
+     * @param intervalMillis The minimum time between two updates of a stage or race.
+     * @throws IOException If the server socket cannot be opened.
+     */
+    public LeaderboardServer(CyclingPortalImpl portal, int port, long intervalMillis) throws IOException {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        this.portal = portal;
+        this.intervalMillis = intervalMillis;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.flusher = Executors.newSingleThreadScheduledExecutor();
+        server.createContext("/stages/", exchange -> subscribe(exchange, true));
+        server.createContext("/races/", exchange -> subscribe(exchange, false));
+    }
+
+    /**
+     * Starts accepting connections and pushing updates.
+     */
+    public void start() {
+        portal.addRankingListener(this);
+        server.start();
+        flusher.scheduleAtFixedRate(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the server and closes every connection.
+     */
+    public void stop() {
+        portal.removeRankingListener(this);
+        flusher.shutdownNow();
+        server.stop(0);
+        synchronized (this) {
+            closeAll(stageClients);
+            closeAll(raceClients);
+        }
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Records the changes of a mutation until the next flush.
+     *
+     * @param events The changes caused by one mutation.
+     */
+    @Override
+    public synchronized void rankingsChanged(List<RankingEvent> events) {
+        for (RankingEvent event : events) {
+            pendingRaces.add(event.getRaceId());
+            switch (event.getType()) {
+                case RESULT_REGISTERED:
+                case RANK_CHANGED:
+                    pendingStageMoves.computeIfAbsent(event.getStageId(), id -> new LinkedHashMap<>())
+                            .put(event.getRiderId(), event.getNewPosition());
+                    break;
+                case RESULT_DELETED:
+                    pendingStageMoves.computeIfAbsent(event.getStageId(), id -> new LinkedHashMap<>())
+                            .put(event.getRiderId(), -1);
+                    break;
+                case GC_LEADER_CHANGED:
+                    pendingLeaders.put(event.getRaceId(), event.getRiderId());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Opens an event stream for a stage or race and sends its current ranking.
+     */
+    private void subscribe(HttpExchange exchange, boolean stage) throws IOException {
+        int id;
+        String path = exchange.getRequestURI().getPath();
+        try {
+            id = Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+        } catch (NumberFormatException e) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        // keep the response open; updates are written by the flusher
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        OutputStream out = exchange.getResponseBody();
+
+        // hold the client's stream until the ranking is written, so no update goes first
+        synchronized (out) {
+            // read the current ranking and register the client before any further change
+            String snapshot;
+            try {
+                synchronized (portal) {
+                    int[] ranking = stage ? portal.getRidersRankInStage(id)
+                            : portal.getRidersGeneralClassificationRank(id);
+                    snapshot = event("ranking", "{\"" + (stage ? "stageId" : "raceId") + "\":" + id
+                            + ",\"riders\":" + toJson(ranking) + "}");
+                    synchronized (this) {
+                        if (!stage) {
+                            raceRankings.putIfAbsent(id, ranking);
+                        }
+                        (stage ? stageClients : raceClients).computeIfAbsent(id, key -> new ArrayList<>()).add(out);
+                    }
+                }
+            } catch (IDNotRecognisedException e) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+
+            // write the ranking outside the portal's and the server's locks
+            exchange.sendResponseHeaders(200, 0);
+            send(List.of(out), snapshot);
+        }
+    }
+
+    /**
+     * Sends one coalesced update per changed stage and race. Updates are built
+     * under the locks but written outside them, so slow clients do not hold up
+     * the portal's mutating thread.
+     */
+    private void flush() {
+        List<List<OutputStream>> targets = new ArrayList<>();
+        List<String> updates = new ArrayList<>();
+        List<Integer> changedRaces = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, Map<Integer, Integer>> entry : pendingStageMoves.entrySet()) {
+                List<OutputStream> clients = stageClients.get(entry.getKey());
+                if (clients == null || clients.isEmpty()) {
+                    continue;
+                }
+                targets.add(new ArrayList<>(clients));
+                updates.add(event("moves", "{\"stageId\":" + entry.getKey() + ",\"moves\":"
+                        + movesJson(entry.getValue()) + "}"));
+            }
+            for (Map.Entry<Integer, Integer> entry : pendingLeaders.entrySet()) {
+                List<OutputStream> clients = raceClients.get(entry.getKey());
+                if (clients != null && !clients.isEmpty()) {
+                    targets.add(new ArrayList<>(clients));
+                    updates.add(event("leader", "{\"raceId\":" + entry.getKey() + ",\"leader\":"
+                            + entry.getValue() + "}"));
+                }
+            }
+            for (int raceId : pendingRaces) {
+                List<OutputStream> clients = raceClients.get(raceId);
+                if (clients != null && !clients.isEmpty()) {
+                    changedRaces.add(raceId);
+                }
+            }
+            pendingStageMoves.clear();
+            pendingLeaders.clear();
+            pendingRaces.clear();
+        }
+
+        // diff the general classification of each changed race with the last one sent
+        if (!changedRaces.isEmpty()) {
+            synchronized (portal) {
+                for (int raceId : changedRaces) {
+                    int[] ranking;
+                    try {
+                        ranking = portal.getRidersGeneralClassificationRank(raceId);
+                    } catch (IDNotRecognisedException e) {
+                        // the race was removed; its clients get no further updates
+                        continue;
+                    }
+                    synchronized (this) {
+                        Map<Integer, Integer> moves = rankMoves(raceRankings.put(raceId, ranking), ranking);
+                        List<OutputStream> clients = raceClients.get(raceId);
+                        if (!moves.isEmpty() && clients != null && !clients.isEmpty()) {
+                            targets.add(new ArrayList<>(clients));
+                            updates.add(event("moves", "{\"raceId\":" + raceId + ",\"moves\":"
+                                    + movesJson(moves) + "}"));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < updates.size(); i++) {
+            send(targets.get(i), updates.get(i));
+        }
+    }
+
+    /**
+     * Finds the riders whose position differs between two rankings, with -1
+     * for riders no longer ranked.
+     */
+    private static Map<Integer, Integer> rankMoves(int[] before, int[] after) {
+        Map<Integer, Integer> oldPositions = new HashMap<>();
+        if (before != null) {
+            for (int i = 0; i < before.length; i++) {
+                oldPositions.put(before[i], i);
+            }
+        }
+        Map<Integer, Integer> moves = new LinkedHashMap<>();
+        for (int i = 0; i < after.length; i++) {
+            Integer oldPosition = oldPositions.remove(after[i]);
+            if (oldPosition == null || oldPosition != i) {
+                moves.put(after[i], i);
+            }
+        }
+        for (int riderId : oldPositions.keySet()) {
+            moves.put(riderId, -1);
+        }
+        return moves;
+    }
+
+    /**
+     * Writes an event to every client, dropping the ones that disconnected.
+     */
+    private void send(List<OutputStream> clients, String event) {
+        byte[] bytes = event.getBytes(StandardCharsets.UTF_8);
+        for (OutputStream out : clients) {
+            try {
+                synchronized (out) {
+                    out.write(bytes);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    stageClients.values().forEach(streams -> streams.remove(out));
+                    raceClients.values().forEach(streams -> streams.remove(out));
+                }
+                closeQuietly(out);
+            }
+        }
+    }
+
+    private static void closeAll(Map<Integer, List<OutputStream>> clients) {
+        for (List<OutputStream> streams : clients.values()) {
+            for (OutputStream out : streams) {
+                closeQuietly(out);
+            }
+        }
+        clients.clear();
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the client is already gone
+        }
+    }
+
+    private static String event(String name, String data) {
+        return "event: " + name + "\ndata: " + data + "\n\n";
+    }
+
+    private static String movesJson(Map<Integer, Integer> moves) {
+        StringBuilder json = new StringBuilder("[");
+        for (Map.Entry<Integer, Integer> move : moves.entrySet()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('[').append(move.getKey()).append(',').append(move.getValue()).append(']');
+        }
+        return json.append(']').toString();
+    }
+
+    private static String toJson(int[] values) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(values[i]);
+        }
+        return json.append(']').toString();
+    }
+}
@@ -140,10 +140,12 @@ public interface MiniCyclingPortal extends Serializable {
 	 * exceptions are thrown.
 	 * 
 	 * @param stageId The ID of the stage being removed.
-	 * @throws IDNotRecognisedException If the ID does not match to any stage in the
-	 *                                  system.
+	 * @throws IDNotRecognisedException   If the ID does not match to any stage in
+	 *                                    the system.
+	 * @throws InvalidStageStateException If the stage belongs to a race whose
+	 *                                    results have been sealed.
 	 */
-	void removeStageById(int stageId) throws IDNotRecognisedException;
+	void removeStageById(int stageId) throws IDNotRecognisedException, InvalidStageStateException;
 
 	/**
 	 * Adds a climb checkpoint to a stage.
@@ -398,10 +400,13 @@ public interface MiniCyclingPortal extends Serializable {
 	 * 
 	 * @param stageId The ID of the stage the result refers to.
 	 * @param riderId The ID of the rider.
-	 * @throws IDNotRecognisedException If the ID does not match to any rider or
-	 *                                  stage in the system.
+	 * @throws IDNotRecognisedException   If the ID does not match to any rider or
+	 *                                    stage in the system.
+	 * @throws InvalidStageStateException If the stage belongs to a race whose
+	 *                                    results have been sealed.
 	 */
-	void deleteRiderResultsInStage(int stageId, int riderId) throws IDNotRecognisedException;
+	void deleteRiderResultsInStage(int stageId, int riderId)
+			throws IDNotRecognisedException, InvalidStageStateException;
 
 	/**
 	 * Get the riders finished position in a a stage.
@@ -0,0 +1,153 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Partial results of the riders still on the road in a stage. Each rider has
+ * one long slot per checkpoint time (start, every checkpoint, finish) in
+ * nanoseconds since midnight, filled in as passages arrive.
+ * <p>
+ * The times of a rider are replaced by an updated copy on each passage, in a
+ * concurrent map, so they can be read from any thread while passages are
+ * recorded. Recording itself is serialised by the portal.
+ */
+public class PassageBuffer implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final long MISSING = -1;
+
+    private int stageId;
+    private int columnCount;
+    private Map<Integer, long[]> partialTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an empty buffer for a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @param columnCount The number of times recorded per rider, i.e., the number
+     *                    of checkpoints in the stage plus the start and finish.
+     */
+    public PassageBuffer(int stageId, int columnCount) {
+        this.stageId = stageId;
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * Gets the ID of the stage.
+     *
+     * @return The stage ID.
+     */
+    public int getStageId() {
+        return stageId;
+    }
+
+    /**
+     * Gets the number of times recorded per rider.
+     *
+     * @return The number of time columns.
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Checks if a passage has already been recorded.
+     *
+     * @param riderId The ID of the rider.
+     * @param column The time column of the passage.
+     * @return True if the rider already has a time in that column.
+     */
+    public boolean hasPassage(int riderId, int column) {
+        long[] times = partialTimes.get(riderId);
+        return times != null && times[column] != MISSING;
+    }
+
+    /**
+     * Records the time at which a rider passed a checkpoint.
+     *
+     * @param riderId The ID of the rider.
+     * @param column The time column of the passage.
+     * @param time The time of the passage.
+     * @return True if every time of the rider has now been recorded.
+     */
+    public boolean record(int riderId, int column, LocalTime time) {
+        long[] times = partialTimes.compute(riderId, (id, recorded) -> {
+            long[] updated;
+            if (recorded == null) {
+                updated = new long[columnCount];
+                Arrays.fill(updated, MISSING);
+            } else {
+                updated = recorded.clone();
+            }
+            updated[column] = StageResults.toNanos(time);
+            return updated;
+        });
+        for (long recordedTime : times) {
+            if (recordedTime == MISSING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the recorded times of a rider.
+     *
+     * @param riderId The ID of the rider.
+     * @return The times with null for passages not yet recorded, or null if the
+     *         rider has no partial result.
+     */
+    public LocalTime[] getTimes(int riderId) {
+        long[] times = partialTimes.get(riderId);
+        if (times == null) {
+            return null;
+        }
+        LocalTime[] result = new LocalTime[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            result[c] = times[c] == MISSING ? null : StageResults.toLocalTime(times[c]);
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the partial result of a rider.
+     *
+     * @param riderId The ID of the rider.
+     * @return True if the rider had a partial result.
+     */
+    public boolean remove(int riderId) {
+        return partialTimes.remove(riderId) != null;
+    }
+
+    /**
+     * Gets the riders with a partial result.
+     *
+     * @return The rider IDs.
+     */
+    public int[] getRiderIds() {
+        return partialTimes.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Gets the number of riders with a partial result.
+     *
+     * @return The number of riders.
+     */
+    public int size() {
+        return partialTimes.size();
+    }
+
+    /**
+     * Restores the concurrent map of a buffer, whichever map it was saved with.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        partialTimes = new ConcurrentHashMap<>(partialTimes);
+    }
+}
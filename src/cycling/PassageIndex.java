@@ -0,0 +1,141 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Ordered index of the passage times at each intermediate checkpoint of a
+ * stage, covering the riders still on the road; the passing order of finished
+ * riders is read from the time columns of the stage's result block. Each
+ * checkpoint keeps a concurrent skip list of passages ordered by the time
+ * since the rider's start to the nanosecond, wrapped around midnight like the
+ * elapsed time, and then by rider ID, so the running order can be read while
+ * passages are being recorded.
+ */
+public class PassageIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int stageId;
+    private List<ConcurrentSkipListSet<Passage>> columns;
+
+    /**
+     * Constructs an empty index for a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @param columnCount The number of times recorded per rider, i.e., the number
+     *                    of checkpoints in the stage plus the start and finish.
+     */
+    public PassageIndex(int stageId, int columnCount) {
+        this.stageId = stageId;
+        this.columns = new ArrayList<>(columnCount);
+        for (int c = 0; c < columnCount; c++) {
+            columns.add(new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * Gets the ID of the stage.
+     *
+     * @return The stage ID.
+     */
+    public int getStageId() {
+        return stageId;
+    }
+
+    /**
+     * Adds a passage to the index.
+     *
+     * @param riderId The ID of the rider.
+     * @param column The time column of the checkpoint.
+     * @param start The start time of the rider in nanoseconds since midnight.
+     * @param time The passage time in nanoseconds since midnight.
+     */
+    public void add(int riderId, int column, long start, long time) {
+        columns.get(column).add(new Passage(riderId, start, time));
+    }
+
+    /**
+     * Removes a passage from the index.
+     *
+     * @param riderId The ID of the rider.
+     * @param column The time column of the checkpoint.
+     * @param start The start time of the rider in nanoseconds since midnight.
+     * @param time The passage time in nanoseconds since midnight.
+     */
+    public void remove(int riderId, int column, long start, long time) {
+        columns.get(column).remove(new Passage(riderId, start, time));
+    }
+
+    /**
+     * Gets the running order at a checkpoint.
+     *
+     * @param column The time column of the checkpoint.
+     * @return The passages in passing order.
+     */
+    public Passage[] getPassages(int column) {
+        ConcurrentSkipListSet<Passage> passages = columns.get(column);
+        Passage[] ordered = new Passage[passages.size()];
+        int i = 0;
+        for (Passage passage : passages) {
+            if (i == ordered.length) {
+                // passages recorded while iterating are left for the next read
+                break;
+            }
+            ordered[i++] = passage;
+        }
+        return i == ordered.length ? ordered : Arrays.copyOf(ordered, i);
+    }
+
+    /**
+     * The passage of a rider at a checkpoint.
+     */
+    public static final class Passage implements Comparable<Passage>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final int riderId;
+        private final long time;
+        private final long offset;
+
+        private Passage(int riderId, long start, long time) {
+            this.riderId = riderId;
+            this.time = time;
+            this.offset = StageResults.elapsed(start, time);
+        }
+
+        /**
+         * Gets the ID of the rider.
+         *
+         * @return The rider ID.
+         */
+        public int getRiderId() {
+            return riderId;
+        }
+
+        /**
+         * Gets the passage time.
+         *
+         * @return The time in nanoseconds since midnight.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Gets the time the rider took from the start to the checkpoint.
+         *
+         * @return The time in nanoseconds, less than a day.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        @Override
+        public int compareTo(Passage other) {
+            int byTime = Long.compare(offset, other.offset);
+            return byTime != 0 ? byTime : Integer.compare(riderId, other.riderId);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Holds the points awarded by finishing position for each stage type and
+ * each checkpoint type.
+ */
+public class PointTables implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Map<StageType, int[]> stagePoints = new EnumMap<>(StageType.class);
+    private Map<CheckpointType, int[]> checkpointPoints = new EnumMap<>(CheckpointType.class);
+
+    /**
+     * Constructs the point tables with the default values.
+     */
+    public PointTables() {
+        stagePoints.put(StageType.FLAT, new int[] { 50, 30, 20, 18, 16, 14, 12, 10, 8, 7, 6, 5, 4, 3, 2 });
+        stagePoints.put(StageType.MEDIUM_MOUNTAIN, new int[] { 30, 25, 22, 19, 17, 15, 13, 11, 9, 7, 6, 5, 4, 3, 2 });
+        stagePoints.put(StageType.HIGH_MOUNTAIN, new int[] { 20, 17, 15, 13, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1 });
+        stagePoints.put(StageType.TT, new int[] { 20, 17, 15, 13, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1 });
+
+        checkpointPoints.put(CheckpointType.SPRINT, new int[] { 20, 17, 15, 13, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1 });
+        checkpointPoints.put(CheckpointType.C4, new int[] { 1 });
+        checkpointPoints.put(CheckpointType.C3, new int[] { 2, 1 });
+        checkpointPoints.put(CheckpointType.C2, new int[] { 5, 3, 2, 1 });
+        checkpointPoints.put(CheckpointType.C1, new int[] { 10, 8, 6, 4, 2, 1 });
+        checkpointPoints.put(CheckpointType.HC, new int[] { 20, 15, 12, 10, 8, 6, 4, 2 });
+    }
+
+    /**
+     * Constructs a copy of other point tables.
+     *
+     * @param other The point tables to copy.
+     */
+    public PointTables(PointTables other) {
+        for (Map.Entry<StageType, int[]> entry : other.stagePoints.entrySet()) {
+            stagePoints.put(entry.getKey(), entry.getValue().clone());
+        }
+        for (Map.Entry<CheckpointType, int[]> entry : other.checkpointPoints.entrySet()) {
+            checkpointPoints.put(entry.getKey(), entry.getValue().clone());
+        }
+    }
+
+    /**
+     * Sets the points awarded at the finish of a stage.
+     *
+     * @param type The type of the stage.
+     * @param points The points by finishing position, winner first.
+     */
+    public void setStagePoints(StageType type, int... points) {
+        stagePoints.put(type, points.clone());
+    }
+
+    /**
+     * Sets the points awarded when passing a checkpoint.
+     *
+     * @param type The type of the checkpoint.
+     * @param points The points by passing position, first rider first.
+     */
+    public void setCheckpointPoints(CheckpointType type, int... points) {
+        checkpointPoints.put(type, points.clone());
+    }
+
+    /**
+     * Gets the points awarded at the finish of a stage.
+     *
+     * @param type The type of the stage.
+     * @param position The finishing position, 0 being the winner.
+     * @return The points awarded, 0 outside the table.
+     */
+    public int getStagePoints(StageType type, int position) {
+        int[] table = stagePoints.get(type);
+        return position < table.length ? table[position] : 0;
+    }
+
+    /**
+     * Gets the points awarded when passing a checkpoint.
+     *
+     * @param type The type of the checkpoint.
+     * @param position The passing position, 0 being the first rider.
+     * @return The points awarded, 0 outside the table.
+     */
+    public int getCheckpointPoints(CheckpointType type, int position) {
+        int[] table = checkpointPoints.get(type);
+        return position < table.length ? table[position] : 0;
+    }
+}
@@ -0,0 +1,211 @@
+package cycling;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
+/**
+ * Hosts the portals of many independent competitions, keyed by tenant.
+ * <p>
+ * Each tenant's portal is saved to its own snapshot file in the registry
+ * directory. Portals are loaded on first access and at most a fixed number
+ * are kept in memory: when the limit is exceeded, the least recently
+ * accessed portal is saved to its snapshot file and unloaded. Every loaded
+ * portal computes its classifications on one pool owned by the registry and
+ * takes its names and descriptions from one shared string pool.
+ * <p>
+ * The limit bounds the number of loaded portals, not the memory they use:
+ * portals are not measured, so a limit suited to small competitions can
+ * still exhaust the heap if several large ones are loaded together. It
+ * should be chosen for the largest portals the registry hosts.
+ * <p>
+ * A portal obtained from the registry may be unloaded by later calls for
+ * other tenants, after which changes made to it are lost. Callers should
+ * get the portal again from the registry for each unit of work rather than
+ * keep a reference to it.
+ */
+public class PortalRegistry implements AutoCloseable {
+
+    private static final String SNAPSHOT_SUFFIX = ".portal";
+    private static final Pattern TENANT_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private final Path directory;
+    private final int maxLoadedPortals;
+    private final ForkJoinPool classificationPool;
+    private final StringPool stringPool = new StringPool();
+    private final LinkedHashMap<String, CyclingPortalImpl> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Constructs a registry keeping its snapshot files in a directory.
+     *
+     * @param directory The directory holding the snapshot files; created if missing.
+     * @param maxLoadedPortals The maximum number of portals kept in memory, whatever their size.
+     * @param parallelism The number of threads shared by all portals to compute classifications.
+     * @throws IOException If the directory cannot be created.
+     */
+    public PortalRegistry(Path directory, int maxLoadedPortals, int parallelism) throws IOException {
+        if (maxLoadedPortals <= 0) {
+            throw new IllegalArgumentException("Maximum number of loaded portals must be positive");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxLoadedPortals = maxLoadedPortals;
+        this.classificationPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Gets the portal of a tenant, loading it from its snapshot file or
+     * creating an empty one if the tenant is new.
+     *
+     * @param tenant The tenant, made of letters, digits, '-' and '_'.
+     * @return The tenant's portal.
+     * @throws IOException If the snapshot file cannot be read, or another
+     *                     portal cannot be saved to make room.
+     * @throws ClassNotFoundException If the snapshot file does not hold a portal.
+     */
+    public synchronized CyclingPortalImpl getPortal(String tenant) throws IOException, ClassNotFoundException {
+        Path snapshot = snapshotOf(tenant);
+
+        // return the portal if it is already in memory
+        CyclingPortalImpl portal = loaded.get(tenant);
+        if (portal != null) {
+            return portal;
+        }
+
+        // otherwise load it, or start an empty one
+        portal = new CyclingPortalImpl();
+        if (Files.exists(snapshot)) {
+            portal.loadCyclingPortal(snapshot.toString());
+        }
+        portal.setClassificationPool(classificationPool);
+        portal.setStringPool(stringPool);
+        loaded.put(tenant, portal);
+
+        // save and unload the least recently used portals over the limit
+        Iterator<Map.Entry<String, CyclingPortalImpl>> eldest = loaded.entrySet().iterator();
+        while (loaded.size() > maxLoadedPortals) {
+            Map.Entry<String, CyclingPortalImpl> entry = eldest.next();
+            entry.getValue().saveCyclingPortal(snapshotOf(entry.getKey()).toString());
+            eldest.remove();
+        }
+        return portal;
+    }
+
+    /**
+     * Checks whether a tenant has a portal, in memory or on disk.
+     *
+     * @param tenant The tenant.
+     * @return True if the tenant is known to the registry.
+     */
+    public synchronized boolean hasTenant(String tenant) {
+        return loaded.containsKey(tenant) || Files.exists(snapshotOf(tenant));
+    }
+
+    /**
+     * Gets every tenant known to the registry, in memory or on disk.
+     *
+     * @return The tenants, sorted by name.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public synchronized Set<String> getTenants() throws IOException {
+        Set<String> tenants = new TreeSet<>(loaded.keySet());
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, "*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshot : snapshots) {
+                String name = snapshot.getFileName().toString();
+                tenants.add(name.substring(0, name.length() - SNAPSHOT_SUFFIX.length()));
+            }
+        }
+        return tenants;
+    }
+
+    /**
+     * Gets the string pool shared by every portal of the registry.
+     *
+     * @return The string pool.
+     */
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * Gets the number of portals currently in memory.
+     *
+     * @return The number of loaded portals.
+     */
+    public synchronized int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Saves the portal of a tenant and unloads it from memory.
+     *
+     * @param tenant The tenant.
+     * @throws IOException If the snapshot file cannot be written.
+     */
+    public synchronized void unload(String tenant) throws IOException {
+        CyclingPortalImpl portal = loaded.get(tenant);
+        if (portal != null) {
+            portal.saveCyclingPortal(snapshotOf(tenant).toString());
+            loaded.remove(tenant);
+        }
+    }
+
+    /**
+     * Removes a tenant, discarding its portal and deleting its snapshot file.
+     *
+     * @param tenant The tenant.
+     * @throws IOException If the snapshot file cannot be deleted.
+     */
+    public synchronized void removeTenant(String tenant) throws IOException {
+        Path snapshot = snapshotOf(tenant);
+        loaded.remove(tenant);
+        Files.deleteIfExists(snapshot);
+    }
+
+    /**
+     * Saves every loaded portal to its snapshot file, keeping them in memory.
+     *
+     * @throws IOException If a snapshot file cannot be written.
+     */
+    public synchronized void saveAll() throws IOException {
+        for (Map.Entry<String, CyclingPortalImpl> entry : loaded.entrySet()) {
+            entry.getValue().saveCyclingPortal(snapshotOf(entry.getKey()).toString());
+        }
+    }
+
+    /**
+     * Saves and unloads every portal and stops the shared pool.
+     *
+     * @throws IOException If a snapshot file cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            saveAll();
+            loaded.clear();
+        } finally {
+            classificationPool.shutdown();
+        }
+    }
+
+    /**
+     * Gets the snapshot file of a tenant, rejecting names that are not safe
+     * to use as file names.
+     */
+    private Path snapshotOf(String tenant) {
+        if (tenant == null || !TENANT_PATTERN.matcher(tenant).matches()) {
+            throw new IllegalArgumentException("Invalid tenant: " + tenant);
+        }
+        return directory.resolve(tenant + SNAPSHOT_SUFFIX);
+    }
+}
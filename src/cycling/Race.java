@@ -1,11 +1,14 @@
 package cycling;
 
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.*;
 
 /**
  * Represents a race in the cycling portal.
  * A race contains multiple stages and holds information about the race name and description.
+ * Stages are kept ordered by start time, ties broken by stage ID, with stages
+ * without a start time last.
  */
 public class Race implements Serializable {
     private static final long serialVersionUID = 1L;
@@ -13,7 +16,12 @@ public class Race implements Serializable {
     private int id;
     private String name;
     private String description;
-    private List<Stage> stages;
+    private TreeSet<Stage> stages;
+    private long version;
+
+    // ordered views of the stages, rebuilt after the stages change
+    private transient List<Stage> stageList;
+    private transient int[] stageIds;
 
     /**
      * Constructs a new Race.
@@ -26,7 +34,19 @@ public class Race implements Serializable {
         this.id = id;
         this.name = name;
         this.description = description;
-        this.stages = new ArrayList<>();
+        this.stages = new TreeSet<>(new StartTimeOrder());
+    }
+
+    /**
+     * Constructs a new Race whose name and description are taken from a pool.
+     * 
+     * @param id The unique identifier for the race.
+     * @param name The name of the race.
+     * @param description A description of the race.
+     * @param pool The pool of shared strings.
+     */
+    public Race(int id, String name, String description, StringPool pool) {
+        this(id, pool.intern(name), pool.intern(description));
     }
 
     /**
@@ -57,12 +77,28 @@ public class Race implements Serializable {
     }
 
     /**
-     * Gets the list of stages in the race.
+     * Gets the list of stages in the race, ordered by start time.
      * 
-     * @return A list of stages.
+     * @return An unmodifiable list of stages.
      */
     public List<Stage> getStages() {
-        return stages;
+        if (stageList == null) {
+            stageList = List.copyOf(stages);
+        }
+        return stageList;
+    }
+
+    /**
+     * Gets the IDs of the stages in the race, ordered by start time. The
+     * array is shared and must not be modified.
+     * 
+     * @return The stage IDs.
+     */
+    public int[] getStageIds() {
+        if (stageIds == null) {
+            stageIds = stages.stream().mapToInt(Stage::getId).toArray();
+        }
+        return stageIds;
     }
 
     /**
@@ -72,5 +108,66 @@ public class Race implements Serializable {
      */
     public void addStage(Stage stage) {
         stages.add(stage);
+        stagesChanged();
+    }
+
+    /**
+     * Removes a stage from the race.
+     * 
+     * @param stage The stage to be removed.
+     * @return True if the stage was part of the race.
+     */
+    public boolean removeStage(Stage stage) {
+        boolean removed = stages.remove(stage);
+        if (removed) {
+            stagesChanged();
+        }
+        return removed;
+    }
+
+    private void stagesChanged() {
+        stageList = null;
+        stageIds = null;
+    }
+
+    /**
+     * Gets the version of the race, which changes whenever its stages or their results change.
+     * 
+     * @return The race version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Marks the race as changed.
+     */
+    public void incrementVersion() {
+        version++;
+    }
+
+    /**
+     * Replaces the name and description of the race by their pooled instances.
+     * 
+     * @param pool The pool of shared strings.
+     */
+    public void internStrings(StringPool pool) {
+        name = pool.intern(name);
+        description = pool.intern(description);
+    }
+
+    /**
+     * Orders stages by start time, stages without one last, then by ID.
+     */
+    private static class StartTimeOrder implements Comparator<Stage>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private static final Comparator<LocalDateTime> START_TIMES = Comparator.nullsLast(Comparator.naturalOrder());
+
+        @Override
+        public int compare(Stage a, Stage b) {
+            int order = START_TIMES.compare(a.getStartTime(), b.getStartTime());
+            return order != 0 ? order : Integer.compare(a.getId(), b.getId());
+        }
     }
 }
@@ -0,0 +1,129 @@
+package cycling;
+
+/**
+ * Describes a single change caused by a mutation of the results of a stage.
+ */
+public class RankingEvent {
+
+    /**
+     * The kinds of change reported to ranking listeners.
+     */
+    public enum Type {
+        /**
+         * A result was registered for a rider.
+         */
+        RESULT_REGISTERED,
+
+        /**
+         * The result of a rider was deleted.
+         */
+        RESULT_DELETED,
+
+        /**
+         * A rider moved to another position in the stage ranking.
+         */
+        RANK_CHANGED,
+
+        /**
+         * Another rider leads the general classification of the race.
+         */
+        GC_LEADER_CHANGED;
+    }
+
+    private final Type type;
+    private final int raceId;
+    private final int stageId;
+    private final int riderId;
+    private final int oldPosition;
+    private final int newPosition;
+
+    /**
+     * Constructs a new RankingEvent.
+     *
+     * @param type The kind of change.
+     * @param raceId The ID of the race.
+     * @param stageId The ID of the stage, or -1 for race-wide changes.
+     * @param riderId The ID of the rider concerned; for a leader change, the new leader or -1.
+     * @param oldPosition The previous position, 0 being first, or -1 if not ranked before.
+     * @param newPosition The new position, 0 being first, or -1 if no longer ranked.
+     */
+    public RankingEvent(Type type, int raceId, int stageId, int riderId, int oldPosition, int newPosition) {
+        this.type = type;
+        this.raceId = raceId;
+        this.stageId = stageId;
+        this.riderId = riderId;
+        this.oldPosition = oldPosition;
+        this.newPosition = newPosition;
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return The event type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the ID of the race.
+     *
+     * @return The race ID.
+     */
+    public int getRaceId() {
+        return raceId;
+    }
+
+    /**
+     * Gets the ID of the stage.
+     *
+     * @return The stage ID, or -1 for race-wide changes.
+     */
+    public int getStageId() {
+        return stageId;
+    }
+
+    /**
+     * Gets the ID of the rider concerned.
+     *
+     * @return The rider ID.
+     */
+    public int getRiderId() {
+        return riderId;
+    }
+
+    /**
+     * Gets the previous position of the rider.
+     *
+     * @return The old position, or -1 if the rider was not ranked.
+     */
+    public int getOldPosition() {
+        return oldPosition;
+    }
+
+    /**
+     * Gets the new position of the rider.
+     *
+     * @return The new position, or -1 if the rider is no longer ranked.
+     */
+    public int getNewPosition() {
+        return newPosition;
+    }
+
+    /**
+     * Returns a string representation of the RankingEvent object.
+     *
+     * @return A string representation of the RankingEvent object.
+     */
+    @Override
+    public String toString() {
+        return "RankingEvent{" +
+                "type=" + type +
+                ", raceId=" + raceId +
+                ", stageId=" + stageId +
+                ", riderId=" + riderId +
+                ", oldPosition=" + oldPosition +
+                ", newPosition=" + newPosition +
+                '}';
+    }
+}
@@ -0,0 +1,19 @@
+package cycling;
+
+import java.util.List;
+
+/**
+ * Receives the changes caused by each mutation of stage results, so clients
+ * can react incrementally instead of polling the rankings.
+ */
+@FunctionalInterface
+public interface RankingListener {
+
+	/**
+	 * Called once after each mutation with every change it caused.
+	 *
+	 * @param events The changes, in the order they were detected.
+	 */
+	void rankingsChanged(List<RankingEvent> events);
+
+}
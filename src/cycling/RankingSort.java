@@ -0,0 +1,313 @@
+package cycling;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorting of rankings by time. Entries are given as parallel primitive
+ * arrays of times in nanoseconds and IDs, and are ordered by time with ties
+ * broken by the smaller ID, so equal times always rank the same way
+ * regardless of the order in which results were registered.
+ * <p>
+ * The sort works on an array of entry indices and reads the times and IDs
+ * in place, so no key objects are created and no precision is given up to
+ * pack a time and an ID into a single long. Small inputs are merge sorted;
+ * from {@link #RADIX_THRESHOLD} entries up, as in mass-participation events,
+ * a least significant digit radix sort is used instead, first by ID and then
+ * by time, its stability giving the same order as the merge sort.
+ * <p>
+ * Rankings of {@link #PARALLEL_THRESHOLD} entries or more can also be split
+ * across a fork/join pool: entries are distributed into buckets of
+ * consecutive time ranges, each bucket is ranked on its own and the buckets
+ * are laid end to end. Equal times always fall into the same bucket, so the
+ * order is the same as with a single sort.
+ */
+public final class RankingSort {
+
+    /**
+     * Ranges up to this length are sorted by insertion before being merged.
+     */
+    private static final int INSERTION_THRESHOLD = 16;
+
+    /**
+     * The number of entries from which rankings are radix sorted.
+     */
+    public static final int RADIX_THRESHOLD = 2048;
+
+    /**
+     * The number of entries from which rankings given a pool are split across it.
+     */
+    public static final int PARALLEL_THRESHOLD = 16384;
+
+    /**
+     * The number of time buckets per worker thread of the pool.
+     */
+    private static final int BUCKETS_PER_THREAD = 4;
+
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    private RankingSort() {
+    }
+
+    /**
+     * Ranks entries by time, then by ID.
+     *
+     * @param times The time of each entry in nanoseconds.
+     * @param ids The ID of each entry; the IDs must be distinct.
+     * @return The entry indices, fastest first.
+     */
+    public static int[] rank(long[] times, int[] ids) {
+        return rank(times, ids, times.length);
+    }
+
+    /**
+     * Ranks the first entries of the arrays by time, then by ID.
+     *
+     * @param times The time of each entry in nanoseconds.
+     * @param ids The ID of each entry; the IDs must be distinct.
+     * @param count The number of leading entries to rank.
+     * @return The entry indices, fastest first.
+     */
+    public static int[] rank(long[] times, int[] ids, int count) {
+        return count >= RADIX_THRESHOLD ? radixRank(times, ids, count) : mergeRank(times, ids, count);
+    }
+
+    /**
+     * Ranks the first entries of the arrays by time, then by ID, splitting
+     * large rankings across a pool.
+     *
+     * @param times The time of each entry in nanoseconds.
+     * @param ids The ID of each entry; the IDs must be distinct.
+     * @param count The number of leading entries to rank.
+     * @param pool The pool to sort buckets on, or null to sort in the calling thread.
+     * @return The entry indices, fastest first.
+     */
+    public static int[] rank(long[] times, int[] ids, int count, ForkJoinPool pool) {
+        if (pool == null || pool.getParallelism() < 2 || count < PARALLEL_THRESHOLD) {
+            return rank(times, ids, count);
+        }
+
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            minTime = Math.min(minTime, times[i]);
+            maxTime = Math.max(maxTime, times[i]);
+        }
+
+        // group the entries by time bucket, keeping each bucket contiguous
+        int bucketCount = pool.getParallelism() * BUCKETS_PER_THREAD;
+        long width = (maxTime - minTime) / bucketCount + 1;
+        int[] starts = new int[bucketCount + 1];
+        for (int i = 0; i < count; i++) {
+            starts[(int) ((times[i] - minTime) / width) + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            starts[b + 1] += starts[b];
+        }
+        int[] next = Arrays.copyOf(starts, bucketCount);
+        int[] grouped = new int[count];
+        for (int i = 0; i < count; i++) {
+            grouped[next[(int) ((times[i] - minTime) / width)]++] = i;
+        }
+
+        int[] order = new int[count];
+        pool.invoke(new BucketSort(times, ids, starts, grouped, order, 0, bucketCount));
+        return order;
+    }
+
+    /**
+     * Ranks entries with a merge sort over insertion-sorted runs.
+     */
+    static int[] mergeRank(long[] times, int[] ids, int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        for (int from = 0; from < count; from += INSERTION_THRESHOLD) {
+            insertionSort(order, from, Math.min(from + INSERTION_THRESHOLD, count), times, ids);
+        }
+
+        // merge runs of doubling width, swapping the roles of the two arrays
+        int[] source = order;
+        int[] target = new int[count];
+        for (int width = INSERTION_THRESHOLD; width < count; width *= 2) {
+            for (int from = 0; from < count; from += 2 * width) {
+                int middle = Math.min(from + width, count);
+                int to = Math.min(from + 2 * width, count);
+                merge(source, target, from, middle, to, times, ids);
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+
+    /**
+     * Ranks entries with a least significant digit radix sort: counting passes
+     * over the ID digits, then over the time digits, each pass stable. Keys
+     * are taken relative to their minimum so that only the digits spanned by
+     * the range of values are sorted: two passes for IDs spanning fewer than
+     * 2^22 values, and four for times spanning less than 2^44 nanoseconds
+     * (about 4.9 hours), five up to 2^55 nanoseconds.
+     */
+    static int[] radixRank(long[] times, int[] ids, int count) {
+        int[] source = new int[count];
+        int[] target = new int[count];
+        int[] counts = new int[RADIX_MASK + 1];
+        for (int i = 0; i < count; i++) {
+            source[i] = i;
+        }
+
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            minId = Math.min(minId, ids[i]);
+            maxId = Math.max(maxId, ids[i]);
+            minTime = Math.min(minTime, times[i]);
+            maxTime = Math.max(maxTime, times[i]);
+        }
+
+        long idRange = (long) maxId - minId;
+        for (int shift = 0; shift < 64 && (idRange >>> shift) != 0; shift += RADIX_BITS) {
+            countingPass(source, target, counts, ids, minId, shift);
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        long timeRange = maxTime - minTime;
+        for (int shift = 0; shift < 64 && (timeRange >>> shift) != 0; shift += RADIX_BITS) {
+            countingPass(source, target, counts, times, minTime, shift);
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        return source;
+    }
+
+    /**
+     * Stably distributes entries by one digit of their ID.
+     */
+    private static void countingPass(int[] source, int[] target, int[] counts, int[] ids, int min, int shift) {
+        Arrays.fill(counts, 0);
+        for (int entry : source) {
+            counts[(int) ((((long) ids[entry] - min) >>> shift) & RADIX_MASK)]++;
+        }
+        toOffsets(counts);
+        for (int entry : source) {
+            target[counts[(int) ((((long) ids[entry] - min) >>> shift) & RADIX_MASK)]++] = entry;
+        }
+    }
+
+    /**
+     * Stably distributes entries by one digit of their time.
+     */
+    private static void countingPass(int[] source, int[] target, int[] counts, long[] times, long min, int shift) {
+        Arrays.fill(counts, 0);
+        for (int entry : source) {
+            counts[(int) (((times[entry] - min) >>> shift) & RADIX_MASK)]++;
+        }
+        toOffsets(counts);
+        for (int entry : source) {
+            target[counts[(int) (((times[entry] - min) >>> shift) & RADIX_MASK)]++] = entry;
+        }
+    }
+
+    /**
+     * Turns digit counts into the position of the first entry of each digit.
+     */
+    private static void toOffsets(int[] counts) {
+        int offset = 0;
+        for (int digit = 0; digit < counts.length; digit++) {
+            int digitCount = counts[digit];
+            counts[digit] = offset;
+            offset += digitCount;
+        }
+    }
+
+    /**
+     * Checks if entry a ranks before entry b.
+     */
+    private static boolean before(int a, int b, long[] times, int[] ids) {
+        return times[a] < times[b] || (times[a] == times[b] && ids[a] < ids[b]);
+    }
+
+    private static void insertionSort(int[] order, int from, int to, long[] times, int[] ids) {
+        for (int i = from + 1; i < to; i++) {
+            int entry = order[i];
+            int j = i;
+            while (j > from && before(entry, order[j - 1], times, ids)) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = entry;
+        }
+    }
+
+    private static void merge(int[] source, int[] target, int from, int middle, int to, long[] times, int[] ids) {
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && !before(source[right], source[left], times, ids))) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+
+    /**
+     * Fork/join action ranking a range of time buckets, split until a single
+     * bucket remains. Each bucket writes its ranked entries into its own
+     * segment of the shared order.
+     */
+    private static class BucketSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] times;
+        private final int[] ids;
+        private final int[] starts;
+        private final int[] grouped;
+        private final int[] order;
+        private final int from;
+        private final int to;
+
+        BucketSort(long[] times, int[] ids, int[] starts, int[] grouped, int[] order, int from, int to) {
+            this.times = times;
+            this.ids = ids;
+            this.starts = starts;
+            this.grouped = grouped;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BucketSort(times, ids, starts, grouped, order, from, middle),
+                        new BucketSort(times, ids, starts, grouped, order, middle, to));
+                return;
+            }
+
+            // rank the bucket's entries as a ranking of its own
+            int start = starts[from];
+            int size = starts[from + 1] - start;
+            long[] bucketTimes = new long[size];
+            int[] bucketIds = new int[size];
+            for (int k = 0; k < size; k++) {
+                bucketTimes[k] = times[grouped[start + k]];
+                bucketIds[k] = ids[grouped[start + k]];
+            }
+            int[] ranked = rank(bucketTimes, bucketIds, size);
+            for (int k = 0; k < size; k++) {
+                order[start + k] = grouped[start + ranked[k]];
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package cycling;
+
+/**
+ * Receives progress reports while the portal recomputes the classifications
+ * of every race.
+ */
+@FunctionalInterface
+public interface RecomputeListener {
+
+	/**
+	 * Called after each batch of races has been recomputed.
+	 *
+	 * @param completedRaces The number of races recomputed so far.
+	 * @param totalRaces     The number of races being recomputed.
+	 */
+	void racesRecomputed(int completedRaces, int totalRaces);
+
+}
@@ -0,0 +1,108 @@
+package cycling;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * Streams the results of a single stage from CSV into a result block, one
+ * line at a time, so a stage with tens of thousands of finishers is never
+ * held as text or as per-rider objects.
+ * <p>
+ * Each line holds the result of one rider:
+ *
+ * <pre>
+ * riderId,startTime,checkpointTime,...,finishTime
+ * </pre>
+ *
+ * Times use the ISO-8601 local time format, e.g. {@code 10:03:21.123456789}.
+ * Blank lines and lines starting with '#' are ignored.
+ * <p>
+ * The importer only checks the syntax of the file and that no rider appears
+ * twice; the results are validated against the portal by
+ * {@link CyclingPortalImpl#importStageResults(int, java.io.Reader)}.
+ */
+public class ResultImporter {
+
+    private ResultImporter() {
+    }
+
+    /**
+     * Reads every result of a stage.
+     *
+     * @param reader The result source.
+     * @param stageId The ID of the stage.
+     * @param columnCount The number of times expected per rider, i.e., the number
+     *                    of checkpoints in the stage plus the start and finish.
+     * @return The results in file order, with the line of each.
+     * @throws IOException If the source cannot be read.
+     * @throws InvalidCheckpointTimesException If a line does not hold the expected number of times.
+     * @throws DuplicatedResultException If a rider has more than one line.
+     * @throws IllegalArgumentException If a line is malformed, with its line number.
+     */
+    public static Batch read(BufferedReader reader, int stageId, int columnCount)
+            throws IOException, InvalidCheckpointTimesException, DuplicatedResultException {
+        StageResults results = new StageResults(stageId, columnCount);
+        int[] lines = new int[64];
+        LocalTime[] times = new LocalTime[columnCount];
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+
+            // split the fields in place, without building a list
+            int riderId;
+            int column = 0;
+            int from = line.indexOf(',');
+            try {
+                riderId = Integer.parseInt((from < 0 ? line : line.substring(0, from)).trim());
+                while (from >= 0) {
+                    int to = line.indexOf(',', from + 1);
+                    if (column == columnCount) {
+                        column++;
+                        break;
+                    }
+                    times[column++] = LocalTime.parse(line.substring(from + 1, to < 0 ? line.length() : to).trim());
+                    from = to;
+                }
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": invalid time", e);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+            }
+            if (column != columnCount) {
+                throw new InvalidCheckpointTimesException("Line " + lineNumber + ": expected " + columnCount
+                        + " checkpoint times");
+            }
+            if (results.contains(riderId)) {
+                throw new DuplicatedResultException("Line " + lineNumber + ": rider " + riderId
+                        + " already has a result");
+            }
+
+            if (results.size() == lines.length) {
+                lines = Arrays.copyOf(lines, lines.length * 2);
+            }
+            lines[results.size()] = lineNumber;
+            results.add(riderId, times);
+        }
+        return new Batch(results, lines);
+    }
+
+    /**
+     * The results read from a source.
+     */
+    public static class Batch {
+        final StageResults results;
+        final int[] lines;
+
+        Batch(StageResults results, int[] lines) {
+            this.results = results;
+            this.lines = lines;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Append-only history of the results of a single stage.
+ * <p>
+ * Every registration and deletion of a result is appended with the portal
+ * sequence number of the mutation that caused it. Entries are never changed,
+ * so the results of the stage as they stood after any mutation are rebuilt by
+ * replaying the entries up to its sequence number.
+ * <p>
+ * The times of registrations are held in a single byte buffer as gaps
+ * between consecutive checkpoints, encoded as in the serialised form of the
+ * result blocks, rather than as one array per entry. Like the result blocks,
+ * the buffer can be kept outside the Java heap, so the history of a large
+ * stage neither duplicates its results on the heap nor lengthens garbage
+ * collection pauses. Only the sequence numbers, rider IDs and entry
+ * boundaries stay on the heap.
+ * <p>
+ * When serialised, sequence numbers are written as gaps from the previous
+ * entry followed by the encoded times, so the buffer is written as it is.
+ */
+public class ResultLog implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int stageId;
+    private int columnCount;
+    private int size;
+    private boolean offHeap;
+    private transient long[] sequences;
+    private transient int[] riderIds;
+    private transient int[] ends;
+    private transient ByteBuffer data;
+
+    /**
+     * Constructs an empty history for a stage, with its times on the heap.
+     *
+     * @param stageId The ID of the stage.
+     * @param columnCount The number of times recorded per rider.
+     */
+    public ResultLog(int stageId, int columnCount) {
+        this(stageId, columnCount, false);
+    }
+
+    /**
+     * Constructs an empty history for a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @param columnCount The number of times recorded per rider.
+     * @param offHeap True to store the times outside the Java heap.
+     */
+    public ResultLog(int stageId, int columnCount, boolean offHeap) {
+        this.stageId = stageId;
+        this.columnCount = columnCount;
+        this.offHeap = offHeap;
+        this.sequences = new long[INITIAL_CAPACITY];
+        this.riderIds = new int[INITIAL_CAPACITY];
+        this.ends = new int[INITIAL_CAPACITY];
+        this.data = allocate(INITIAL_CAPACITY * columnCount * VarInts.MAX_LENGTH);
+    }
+
+    /**
+     * Gets the ID of the stage.
+     *
+     * @return The stage ID.
+     */
+    public int getStageId() {
+        return stageId;
+    }
+
+    /**
+     * Gets the number of entries in the history.
+     *
+     * @return The number of registrations and deletions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the times of the history are stored outside the Java heap.
+     *
+     * @return True if the times are off-heap.
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Moves the times of the history on or off the heap.
+     *
+     * @param offHeap True to store the times outside the Java heap.
+     */
+    public void setOffHeap(boolean offHeap) {
+        if (this.offHeap != offHeap) {
+            this.offHeap = offHeap;
+            data = copyData(data.capacity());
+        }
+    }
+
+    /**
+     * Records the registration of a result.
+     *
+     * @param sequence The sequence number of the mutation.
+     * @param riderId The ID of the rider.
+     * @param checkpointTimes The registered times in nanoseconds since midnight.
+     */
+    public void appendRegistration(long sequence, int riderId, long[] checkpointTimes) {
+        ensureData();
+        long previous = 0;
+        for (long time : checkpointTimes) {
+            VarInts.putGap(data, time - previous);
+            previous = time;
+        }
+        append(sequence, riderId);
+    }
+
+    /**
+     * Records the registration of a result held in a result block, reading
+     * its times in place.
+     *
+     * @param sequence The sequence number of the mutation.
+     * @param stageResults The result block holding the result.
+     * @param row The row of the result.
+     */
+    public void appendRegistration(long sequence, StageResults stageResults, int row) {
+        ensureData();
+        long previous = 0;
+        for (int c = 0; c < columnCount; c++) {
+            long time = stageResults.getTime(row, c);
+            VarInts.putGap(data, time - previous);
+            previous = time;
+        }
+        append(sequence, stageResults.getRiderId(row));
+    }
+
+    /**
+     * Records the deletion of a result.
+     *
+     * @param sequence The sequence number of the mutation.
+     * @param riderId The ID of the rider.
+     */
+    public void appendDeletion(long sequence, int riderId) {
+        append(sequence, riderId);
+    }
+
+    /**
+     * Rebuilds the results of the stage as they stood after a mutation.
+     *
+     * @param sequence The sequence number of the mutation.
+     * @return A new result block holding the results at that point.
+     */
+    public StageResults replay(long sequence) {
+        StageResults stageResults = new StageResults(stageId, columnCount);
+        ByteBuffer view = data.duplicate();
+        long[] entryTimes = new long[columnCount];
+        int start = 0;
+        for (int i = 0; i < size && sequences[i] <= sequence; i++) {
+            if (ends[i] != start) {
+                view.position(start);
+                long time = 0;
+                for (int c = 0; c < columnCount; c++) {
+                    time += VarInts.getGap(view);
+                    entryTimes[c] = time;
+                }
+                stageResults.add(riderIds[i], entryTimes);
+            } else {
+                stageResults.remove(riderIds[i]);
+            }
+            start = ends[i];
+        }
+        return stageResults;
+    }
+
+    /**
+     * Adds an entry ending at the current position of the buffer; a
+     * deletion adds no bytes.
+     */
+    private void append(long sequence, int riderId) {
+        if (size == sequences.length) {
+            int capacity = size * 2;
+            sequences = Arrays.copyOf(sequences, capacity);
+            riderIds = Arrays.copyOf(riderIds, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        sequences[size] = sequence;
+        riderIds[size] = riderId;
+        ends[size] = data.position();
+        size++;
+    }
+
+    /**
+     * Grows the buffer if it may not hold the times of one more entry.
+     */
+    private void ensureData() {
+        int needed = columnCount * VarInts.MAX_LENGTH;
+        if (data.remaining() < needed) {
+            data = copyData(Math.max(data.capacity() * 2, data.position() + needed));
+        }
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Copies the used bytes of the buffer into a new one of the current
+     * storage kind.
+     */
+    private ByteBuffer copyData(int capacity) {
+        ByteBuffer copy = allocate(capacity);
+        ByteBuffer used = data.duplicate();
+        used.flip();
+        copy.put(used);
+        return copy;
+    }
+
+    /**
+     * Writes the entries in their delta-encoded form after the fixed fields.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        long previousSequence = 0;
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            VarInts.writeUnsigned(out, sequences[i] - previousSequence);
+            previousSequence = sequences[i];
+            VarInts.writeUnsigned(out, riderIds[i]);
+            out.writeBoolean(ends[i] != start);
+            for (int b = start; b < ends[i]; b++) {
+                out.writeByte(data.get(b));
+            }
+            start = ends[i];
+        }
+    }
+
+    /**
+     * Decodes the entries written by {@link #writeObject(ObjectOutputStream)}.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        sequences = new long[capacity];
+        riderIds = new int[capacity];
+        ends = new int[capacity];
+        data = allocate(INITIAL_CAPACITY * columnCount * VarInts.MAX_LENGTH);
+        long sequence = 0;
+        for (int i = 0; i < size; i++) {
+            sequence += VarInts.readUnsigned(in);
+            sequences[i] = sequence;
+            riderIds[i] = (int) VarInts.readUnsigned(in);
+            if (in.readBoolean()) {
+                ensureData();
+                for (int c = 0; c < columnCount; c++) {
+                    VarInts.putGap(data, VarInts.readGap(in));
+                }
+            }
+            ends[i] = data.position();
+        }
+    }
+}
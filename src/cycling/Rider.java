@@ -25,6 +25,18 @@ public class Rider implements Serializable {
         this.yearOfBirth = yearOfBirth;
     }
 
+    /**
+     * Constructs a new Rider whose name is taken from a pool.
+     * 
+     * @param id The unique ID of the rider.
+     * @param name The name of the rider.
+     * @param yearOfBirth The year of birth of the rider.
+     * @param pool The pool of shared strings.
+     */
+    public Rider(int id, String name, int yearOfBirth, StringPool pool) {
+        this(id, pool.intern(name), yearOfBirth);
+    }
+
     /**
      * Gets the unique identifier of the rider.
      * 
@@ -51,4 +63,13 @@ public class Rider implements Serializable {
     public int getYearOfBirth() {
         return yearOfBirth;
     }
+
+    /**
+     * Replaces the name of the rider by its pooled instance.
+     * 
+     * @param pool The pool of shared strings.
+     */
+    public void internStrings(StringPool pool) {
+        name = pool.intern(name);
+    }
 }
@@ -0,0 +1,92 @@
+package cycling;
+
+import java.io.Serializable;
+import java.time.LocalTime;
+
+/**
+ * The results of a rider across several stages, held in compact arrays
+ * aligned by stage. Times are in nanoseconds since midnight.
+ */
+public class RiderHistory implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int riderId;
+    private int[] stageIds;
+    private long[] elapsedTimes;
+    private long[][] checkpointTimes;
+
+    /**
+     * Constructs a new RiderHistory.
+     *
+     * @param riderId The ID of the rider.
+     * @param stageIds The IDs of the stages.
+     * @param elapsedTimes The elapsed time in each stage.
+     * @param checkpointTimes The checkpoint times in each stage, including the start and finish.
+     */
+    public RiderHistory(int riderId, int[] stageIds, long[] elapsedTimes, long[][] checkpointTimes) {
+        this.riderId = riderId;
+        this.stageIds = stageIds;
+        this.elapsedTimes = elapsedTimes;
+        this.checkpointTimes = checkpointTimes;
+    }
+
+    /**
+     * Gets the ID of the rider.
+     *
+     * @return The rider ID.
+     */
+    public int getRiderId() {
+        return riderId;
+    }
+
+    /**
+     * Gets the number of stages in the history.
+     *
+     * @return The number of stages.
+     */
+    public int size() {
+        return stageIds.length;
+    }
+
+    /**
+     * Gets the IDs of the stages.
+     *
+     * @return The stage IDs.
+     */
+    public int[] getStageIds() {
+        return stageIds;
+    }
+
+    /**
+     * Gets the elapsed time in each stage in nanoseconds.
+     *
+     * @return The elapsed times, aligned with the stage IDs.
+     */
+    public long[] getElapsedTimes() {
+        return elapsedTimes;
+    }
+
+    /**
+     * Gets the checkpoint times in each stage in nanoseconds since midnight.
+     *
+     * @return The checkpoint times, aligned with the stage IDs.
+     */
+    public long[][] getCheckpointTimes() {
+        return checkpointTimes;
+    }
+
+    /**
+     * Gets the checkpoint times in one stage as LocalTime values.
+     *
+     * @param index The position of the stage in the history.
+     * @return The checkpoint times, including the start and finish.
+     */
+    public LocalTime[] getCheckpointTimes(int index) {
+        long[] times = checkpointTimes[index];
+        LocalTime[] result = new LocalTime[times.length];
+        for (int c = 0; c < times.length; c++) {
+            result[c] = StageResults.toLocalTime(times[c]);
+        }
+        return result;
+    }
+}
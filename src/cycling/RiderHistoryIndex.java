@@ -0,0 +1,94 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Secondary index from each rider to the stages in which they have a result,
+ * so a rider's results can be fetched without visiting every stage.
+ */
+public class RiderHistoryIndex implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Map<Integer, StageList> stagesByRider = new HashMap<>();
+
+    /**
+     * Records that a rider has a result in a stage.
+     *
+     * @param riderId The ID of the rider.
+     * @param stageId The ID of the stage.
+     */
+    public void add(int riderId, int stageId) {
+        stagesByRider.computeIfAbsent(riderId, id -> new StageList()).add(stageId);
+    }
+
+    /**
+     * Records that a rider no longer has a result in a stage.
+     *
+     * @param riderId The ID of the rider.
+     * @param stageId The ID of the stage.
+     */
+    public void remove(int riderId, int stageId) {
+        StageList stageList = stagesByRider.get(riderId);
+        if (stageList != null && stageList.remove(stageId) && stageList.size == 0) {
+            stagesByRider.remove(riderId);
+        }
+    }
+
+    /**
+     * Forgets every result of a rider.
+     *
+     * @param riderId The ID of the rider.
+     */
+    public void removeRider(int riderId) {
+        stagesByRider.remove(riderId);
+    }
+
+    /**
+     * Gets the stages in which a rider has a result, in registration order.
+     *
+     * @param riderId The ID of the rider.
+     * @return The stage IDs.
+     */
+    public int[] getStages(int riderId) {
+        StageList stageList = stagesByRider.get(riderId);
+        return stageList == null ? new int[0] : Arrays.copyOf(stageList.stageIds, stageList.size);
+    }
+
+    /**
+     * Forgets every result of every rider.
+     */
+    public void clear() {
+        stagesByRider.clear();
+    }
+
+    /**
+     * Growable list of the stage IDs of one rider.
+     */
+    private static class StageList implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int[] stageIds = new int[4];
+        private int size;
+
+        private void add(int stageId) {
+            if (size == stageIds.length) {
+                stageIds = Arrays.copyOf(stageIds, size * 2);
+            }
+            stageIds[size++] = stageId;
+        }
+
+        private boolean remove(int stageId) {
+            for (int i = 0; i < size; i++) {
+                if (stageIds[i] == stageId) {
+                    System.arraycopy(stageIds, i + 1, stageIds, i, size - i - 1);
+                    size--;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package cycling;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Index from rider IDs to the rows of a result block. Entries are held in an
+ * open addressing table of primitive keys and rows, so indexing a result
+ * creates no object, and the table is allocated on or off the heap together
+ * with the times of the block. Removing an entry shifts the rest of its probe
+ * run back, so no tombstones build up as results are deleted.
+ */
+public class RiderRowIndex {
+
+    private static final int EMPTY = -1;
+
+    private boolean offHeap;
+    private IntBuffer table;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructs an empty index sized for a number of rows.
+     *
+     * @param expected The number of rows expected.
+     * @param offHeap True to store the table outside the Java heap.
+     */
+    public RiderRowIndex(int expected, boolean offHeap) {
+        this.offHeap = offHeap;
+        this.capacity = Integer.highestOneBit(Math.max(8, expected) * 2 - 1) << 1;
+        this.table = allocate(capacity);
+    }
+
+    /**
+     * Gets the number of riders indexed.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Moves the table on or off the heap.
+     *
+     * @param offHeap True to store the table outside the Java heap.
+     */
+    public void setOffHeap(boolean offHeap) {
+        if (this.offHeap != offHeap) {
+            this.offHeap = offHeap;
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Gets the row of a rider.
+     *
+     * @param riderId The ID of the rider.
+     * @return The row, or -1 if the rider is not indexed.
+     */
+    public int get(int riderId) {
+        int mask = capacity - 1;
+        for (int i = hash(riderId) & mask; rowAt(i) != EMPTY; i = (i + 1) & mask) {
+            if (keyAt(i) == riderId) {
+                return rowAt(i);
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Sets the row of a rider, replacing any row it had.
+     *
+     * @param riderId The ID of the rider.
+     * @param row The row.
+     */
+    public void put(int riderId, int row) {
+        int mask = capacity - 1;
+        int i = hash(riderId) & mask;
+        for (; rowAt(i) != EMPTY; i = (i + 1) & mask) {
+            if (keyAt(i) == riderId) {
+                set(i, riderId, row);
+                return;
+            }
+        }
+        set(i, riderId, row);
+        if (++size * 2 > capacity) {
+            rehash(capacity * 2);
+        }
+    }
+
+    /**
+     * Removes a rider from the index.
+     *
+     * @param riderId The ID of the rider.
+     * @return The row the rider had, or -1 if the rider was not indexed.
+     */
+    public int remove(int riderId) {
+        int mask = capacity - 1;
+        int i = hash(riderId) & mask;
+        while (rowAt(i) != EMPTY && keyAt(i) != riderId) {
+            i = (i + 1) & mask;
+        }
+        int row = rowAt(i);
+        if (row == EMPTY) {
+            return EMPTY;
+        }
+
+        // move back every later entry of the run that may no longer be reached
+        for (int j = (i + 1) & mask; rowAt(j) != EMPTY; j = (j + 1) & mask) {
+            int home = hash(keyAt(j)) & mask;
+            boolean reachable = i < j ? home > i && home <= j : home > i || home <= j;
+            if (!reachable) {
+                set(i, keyAt(j), rowAt(j));
+                i = j;
+            }
+        }
+        set(i, 0, EMPTY);
+        size--;
+        return row;
+    }
+
+    private int keyAt(int i) {
+        return table.get(2 * i);
+    }
+
+    private int rowAt(int i) {
+        return table.get(2 * i + 1);
+    }
+
+    private void set(int i, int riderId, int row) {
+        table.put(2 * i, riderId);
+        table.put(2 * i + 1, row);
+    }
+
+    private void rehash(int newCapacity) {
+        IntBuffer old = table;
+        int oldCapacity = capacity;
+        table = allocate(newCapacity);
+        capacity = newCapacity;
+        int mask = newCapacity - 1;
+        for (int k = 0; k < oldCapacity; k++) {
+            int row = old.get(2 * k + 1);
+            if (row != EMPTY) {
+                int riderId = old.get(2 * k);
+                int i = hash(riderId) & mask;
+                while (rowAt(i) != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                set(i, riderId, row);
+            }
+        }
+    }
+
+    /**
+     * Allocates an empty table, on or off the heap.
+     */
+    private IntBuffer allocate(int slots) {
+        int bytes = slots * 2 * Integer.BYTES;
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        IntBuffer ints = buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+        for (int i = 0; i < slots; i++) {
+            ints.put(2 * i + 1, EMPTY);
+        }
+        return ints;
+    }
+
+    private static int hash(int riderId) {
+        int h = riderId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
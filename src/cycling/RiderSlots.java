@@ -0,0 +1,135 @@
+package cycling;
+
+import java.util.Arrays;
+
+/**
+ * Dense numbering of the riders taking part in a race, so per-rider totals
+ * can be held in arrays sized by the number of participants rather than by
+ * the largest rider ID of the portal.
+ * <p>
+ * Riders are numbered in the order they are added and keep their slot for
+ * the lifetime of the numbering. Slots are looked up in an open addressing
+ * table of primitive keys, so no object is created per lookup. A numbering
+ * may be read by several threads once it is no longer added to.
+ */
+public class RiderSlots {
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int[] riderIds;
+    private int size;
+
+    /**
+     * Constructs an empty numbering.
+     */
+    public RiderSlots() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty numbering sized for a number of riders.
+     *
+     * @param expected The number of riders expected.
+     */
+    public RiderSlots(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.riderIds = new int[Math.max(8, expected)];
+        Arrays.fill(values, EMPTY);
+    }
+
+    /**
+     * Gets the number of riders numbered.
+     *
+     * @return The number of slots.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the rider ID of a slot.
+     *
+     * @param slot The slot.
+     * @return The rider ID.
+     */
+    public int getRiderId(int slot) {
+        return riderIds[slot];
+    }
+
+    /**
+     * Gets the slot of a rider.
+     *
+     * @param riderId The ID of the rider.
+     * @return The slot, or -1 if the rider is not numbered.
+     */
+    public int slotOf(int riderId) {
+        int mask = keys.length - 1;
+        for (int i = hash(riderId) & mask; values[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == riderId) {
+                return values[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Numbers a rider, if not already numbered.
+     *
+     * @param riderId The ID of the rider.
+     * @return The slot of the rider.
+     */
+    public int add(int riderId) {
+        int mask = keys.length - 1;
+        int i = hash(riderId) & mask;
+        for (; values[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == riderId) {
+                return values[i];
+            }
+        }
+        if (size == riderIds.length) {
+            riderIds = Arrays.copyOf(riderIds, size * 2);
+        }
+        keys[i] = riderId;
+        values[i] = size;
+        riderIds[size] = riderId;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return size - 1;
+    }
+
+    /**
+     * Numbers every rider of a list not already numbered.
+     *
+     * @param riderIds The IDs of the riders.
+     */
+    public void addAll(int[] riderIds) {
+        for (int riderId : riderIds) {
+            add(riderId);
+        }
+    }
+
+    private void rehash(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        int mask = capacity - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int i = hash(riderIds[slot]) & mask;
+            while (values[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = riderIds[slot];
+            values[i] = slot;
+        }
+    }
+
+    private static int hash(int riderId) {
+        int h = riderId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
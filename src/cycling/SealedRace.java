@@ -0,0 +1,147 @@
+package cycling;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Immutable archive of a concluded race: the result blocks of its stages
+ * together with every classification precomputed from them. A sealed race is
+ * stored in its own segment file and only loaded when queried.
+ */
+public class SealedRace implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int raceId;
+    private Map<Integer, StageResults> results;
+    private Map<Integer, StageClassification> classifications;
+    private Map<Integer, TeamStageTotals> teamTotals;
+    private Map<Integer, PassageIndex> passageIndexes;
+    private Map<Integer, ResultLog> resultLogs;
+    private GeneralClassification generalClassification;
+
+    /**
+     * Constructs a new SealedRace.
+     *
+     * @param raceId The ID of the race.
+     * @param results The result block of each stage, keyed by stage ID.
+     * @param classifications The classification of each stage, keyed by stage ID.
+     * @param teamTotals The team times of each stage, keyed by stage ID.
+     * @param passageIndexes The checkpoint running orders of each stage, keyed by stage ID.
+     * @param resultLogs The result history of each stage, keyed by stage ID.
+     * @param generalClassification The general classification of the race.
+     */
+    public SealedRace(int raceId, Map<Integer, StageResults> results,
+            Map<Integer, StageClassification> classifications, Map<Integer, TeamStageTotals> teamTotals,
+            Map<Integer, PassageIndex> passageIndexes, Map<Integer, ResultLog> resultLogs,
+            GeneralClassification generalClassification) {
+        this.raceId = raceId;
+        this.results = results;
+        this.classifications = classifications;
+        this.teamTotals = teamTotals;
+        this.passageIndexes = passageIndexes;
+        this.resultLogs = resultLogs;
+        this.generalClassification = generalClassification;
+    }
+
+    /**
+     * Gets the ID of the race.
+     *
+     * @return The race ID.
+     */
+    public int getRaceId() {
+        return raceId;
+    }
+
+    /**
+     * Gets the result block of a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @return The result block, or null if the stage has no results.
+     */
+    public StageResults getResults(int stageId) {
+        return results.get(stageId);
+    }
+
+    /**
+     * Gets the precomputed classification of a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @return The stage classification, or null if the stage has no results.
+     */
+    public StageClassification getStageClassification(int stageId) {
+        return classifications.get(stageId);
+    }
+
+    /**
+     * Gets the team times of a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @return The team times, or null if the stage has no results.
+     */
+    public TeamStageTotals getTeamTotals(int stageId) {
+        return teamTotals.get(stageId);
+    }
+
+    /**
+     * Gets the checkpoint running orders of a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @return The passage index, or null if the stage has no results.
+     */
+    public PassageIndex getPassageIndex(int stageId) {
+        return passageIndexes.get(stageId);
+    }
+
+    /**
+     * Gets the result history of a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @return The result history, or null if no result was ever registered.
+     */
+    public ResultLog getResultLog(int stageId) {
+        return resultLogs.get(stageId);
+    }
+
+    /**
+     * Gets the precomputed general classification of the race.
+     *
+     * @return The general classification.
+     */
+    public GeneralClassification getGeneralClassification() {
+        return generalClassification;
+    }
+
+    /**
+     * Writes the sealed race to a segment file.
+     *
+     * @param filename Location of the segment file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(String filename) throws IOException {
+        try (ObjectOutputStream oos = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filename)))) {
+            oos.writeObject(this);
+        }
+    }
+
+    /**
+     * Reads a sealed race from a segment file.
+     *
+     * @param filename Location of the segment file.
+     * @return The sealed race.
+     * @throws IOException If the file cannot be read.
+     * @throws ClassNotFoundException If the file does not hold a sealed race.
+     */
+    public static SealedRace read(String filename) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            return (SealedRace) ois.readObject();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+
+/**
+ * Reference from the portal to the segment file of a sealed race. Only the
+ * file name is saved with the portal; the sealed race is read on first use
+ * and held softly, so the garbage collector can drop it under memory pressure
+ * and it is simply read again on the next query.
+ */
+public class SealedRaceSegment implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String filename;
+    private transient SoftReference<SealedRace> loaded;
+
+    /**
+     * Constructs a reference to a segment that has just been written.
+     *
+     * @param filename Location of the segment file.
+     * @param sealedRace The sealed race held in the file.
+     */
+    public SealedRaceSegment(String filename, SealedRace sealedRace) {
+        this.filename = filename;
+        this.loaded = new SoftReference<>(sealedRace);
+    }
+
+    /**
+     * Gets the location of the segment file.
+     *
+     * @return The file name.
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Gets the sealed race, reading the segment file if it is not in memory.
+     *
+     * @return The sealed race.
+     * @throws UncheckedIOException If the segment file cannot be read.
+     */
+    public synchronized SealedRace get() {
+        SealedRace sealedRace = loaded == null ? null : loaded.get();
+        if (sealedRace == null) {
+            try {
+                sealedRace = SealedRace.read(filename);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error loading sealed race segment: " + filename, e);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Invalid sealed race segment: " + filename, e);
+            }
+            loaded = new SoftReference<>(sealedRace);
+        }
+        return sealedRace;
+    }
+}
@@ -3,6 +3,7 @@ package cycling;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -12,6 +13,7 @@ public class Stage implements Serializable {
     private static final long serialVersionUID = 1L;
 
     private int id;
+    private int raceId;
     private String name;
     private String description;
     private double length;
@@ -19,19 +21,23 @@ public class Stage implements Serializable {
     private StageType type;
     private List<Checkpoint> checkpoints;
     private boolean waitingForResults;
+    private long version;
 
     /**
      * Constructs a new Stage.
      * 
      * @param id The unique ID of the stage.
+     * @param raceId The ID of the race the stage belongs to.
      * @param name The name of the stage.
      * @param description The description of the stage.
      * @param length The length of the stage in kilometers.
      * @param startTime The start time of the stage.
      * @param type The type of the stage.
      */
-    public Stage(int id, String name, String description, double length, LocalDateTime startTime, StageType type) {
+    public Stage(int id, int raceId, String name, String description, double length, LocalDateTime startTime,
+            StageType type) {
         this.id = id;
+        this.raceId = raceId;
         this.name = name;
         this.description = description;
         this.length = length;
@@ -41,6 +47,23 @@ public class Stage implements Serializable {
         this.waitingForResults = false;
     }
 
+    /**
+     * Constructs a new Stage whose name and description are taken from a pool.
+     * 
+     * @param id The unique ID of the stage.
+     * @param raceId The ID of the race the stage belongs to.
+     * @param name The name of the stage.
+     * @param description The description of the stage.
+     * @param length The length of the stage in kilometers.
+     * @param startTime The start time of the stage.
+     * @param type The type of the stage.
+     * @param pool The pool of shared strings.
+     */
+    public Stage(int id, int raceId, String name, String description, double length, LocalDateTime startTime,
+            StageType type, StringPool pool) {
+        this(id, raceId, pool.intern(name), pool.intern(description), length, startTime, type);
+    }
+
     /**
      * Gets the unique identifier of the stage.
      * 
@@ -50,6 +73,15 @@ public class Stage implements Serializable {
         return id;
     }
 
+    /**
+     * Gets the ID of the race the stage belongs to.
+     * 
+     * @return The race ID.
+     */
+    public int getRaceId() {
+        return raceId;
+    }
+
     /**
      * Gets the name of the stage.
      * 
@@ -113,6 +145,18 @@ public class Stage implements Serializable {
         return checkpoints;
     }
 
+    /**
+     * Gets the checkpoints of the stage ordered by their location. This is the
+     * order in which checkpoint times are registered for each rider.
+     * 
+     * @return A list of checkpoints ordered by location.
+     */
+    public List<Checkpoint> getCheckpointsByLocation() {
+        List<Checkpoint> ordered = new ArrayList<>(checkpoints);
+        ordered.sort(Comparator.comparingDouble(Checkpoint::getLocation));
+        return ordered;
+    }
+
     /**
      * Sets the waiting for results status of the stage.
      * 
@@ -130,4 +174,30 @@ public class Stage implements Serializable {
     public void addCheckpoint(Checkpoint checkpoint) {
         checkpoints.add(checkpoint);
     }
+
+    /**
+     * Gets the version of the stage, which changes whenever its checkpoints, state or results change.
+     * 
+     * @return The stage version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Marks the stage as changed.
+     */
+    public void incrementVersion() {
+        version++;
+    }
+
+    /**
+     * Replaces the name and description of the stage by their pooled instances.
+     * 
+     * @param pool The pool of shared strings.
+     */
+    public void internStrings(StringPool pool) {
+        name = pool.intern(name);
+        description = pool.intern(description);
+    }
 }
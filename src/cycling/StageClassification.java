@@ -0,0 +1,184 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The classification of a stage computed from its result block: riders ranked
+ * by elapsed time together with their adjusted elapsed times, points and
+ * mountain points. All arrays are aligned with the ranking.
+ * <p>
+ * Times are compared to the nanosecond and riders with equal elapsed times
+ * are ranked by rider ID.
+ */
+public class StageClassification implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final long ONE_SECOND = 1_000_000_000L;
+
+    private int stageId;
+    private int[] riderIds;
+    private long[] elapsedTimes;
+    private long[] adjustedElapsedTimes;
+    private int[] points;
+    private int[] mountainPoints;
+
+    private StageClassification(int stageId, int[] riderIds, long[] elapsedTimes, long[] adjustedElapsedTimes,
+            int[] points, int[] mountainPoints) {
+        this.stageId = stageId;
+        this.riderIds = riderIds;
+        this.elapsedTimes = elapsedTimes;
+        this.adjustedElapsedTimes = adjustedElapsedTimes;
+        this.points = points;
+        this.mountainPoints = mountainPoints;
+    }
+
+    /**
+     * Computes the classification of a stage.
+     *
+     * @param stage The stage.
+     * @param results The result block of the stage.
+     * @param tables The point tables to apply.
+     * @return The stage classification.
+     */
+    public static StageClassification compute(Stage stage, StageResults results, PointTables tables) {
+        return compute(stage, results, tables, null);
+    }
+
+    /**
+     * Computes the classification of a stage, sorting large result blocks on a pool.
+     *
+     * @param stage The stage.
+     * @param results The result block of the stage.
+     * @param tables The point tables to apply.
+     * @param pool The pool to sort on, or null to sort in the calling thread.
+     * @return The stage classification.
+     */
+    public static StageClassification compute(Stage stage, StageResults results, PointTables tables,
+            ForkJoinPool pool) {
+        int size = results.size();
+        int[] ranked = results.rankedRows(pool);
+        int[] rowPosition = new int[size];
+
+        int[] riderIds = new int[size];
+        long[] elapsedTimes = new long[size];
+        long[] adjustedElapsedTimes = new long[size];
+        int[] points = new int[size];
+        int[] mountainPoints = new int[size];
+
+        // a single pass over the ranking gives elapsed, adjusted and finish points
+        boolean timeTrial = stage.getType() == StageType.TT;
+        for (int i = 0; i < size; i++) {
+            int row = ranked[i];
+            rowPosition[row] = i;
+            riderIds[i] = results.getRiderId(row);
+            elapsedTimes[i] = results.getElapsedTime(row);
+
+            // riders within one second of the rider ahead share that rider's time
+            if (!timeTrial && i > 0 && elapsedTimes[i] - elapsedTimes[i - 1] < ONE_SECOND) {
+                adjustedElapsedTimes[i] = adjustedElapsedTimes[i - 1];
+            } else {
+                adjustedElapsedTimes[i] = elapsedTimes[i];
+            }
+
+            points[i] = tables.getStagePoints(stage.getType(), i);
+        }
+
+        // intermediate checkpoints award points by passing order
+        List<Checkpoint> checkpoints = stage.getCheckpointsByLocation();
+        for (int c = 0; c < checkpoints.size() && c + 1 < results.getColumnCount() - 1; c++) {
+            CheckpointType type = checkpoints.get(c).getType();
+            int[] passage = results.rowsByPassage(c + 1, pool);
+            int[] target = type == CheckpointType.SPRINT ? points : mountainPoints;
+            for (int i = 0; i < passage.length; i++) {
+                int awarded = tables.getCheckpointPoints(type, i);
+                if (awarded == 0) {
+                    break;
+                }
+                target[rowPosition[passage[i]]] += awarded;
+            }
+        }
+
+        return new StageClassification(stage.getId(), riderIds, elapsedTimes, adjustedElapsedTimes, points,
+                mountainPoints);
+    }
+
+    /**
+     * Gets the ID of the stage.
+     *
+     * @return The stage ID.
+     */
+    public int getStageId() {
+        return stageId;
+    }
+
+    /**
+     * Gets the number of classified riders.
+     *
+     * @return The number of riders.
+     */
+    public int size() {
+        return riderIds.length;
+    }
+
+    /**
+     * Gets the rider IDs ranked by elapsed time.
+     *
+     * @return The ranked rider IDs.
+     */
+    public int[] getRiderIds() {
+        return riderIds;
+    }
+
+    /**
+     * Gets the elapsed times in nanoseconds, aligned with the ranking.
+     *
+     * @return The elapsed times.
+     */
+    public long[] getElapsedTimes() {
+        return elapsedTimes;
+    }
+
+    /**
+     * Gets the adjusted elapsed times in nanoseconds, aligned with the ranking.
+     *
+     * @return The adjusted elapsed times.
+     */
+    public long[] getAdjustedElapsedTimes() {
+        return adjustedElapsedTimes;
+    }
+
+    /**
+     * Gets the points of each rider, aligned with the ranking.
+     *
+     * @return The points.
+     */
+    public int[] getPoints() {
+        return points;
+    }
+
+    /**
+     * Gets the mountain points of each rider, aligned with the ranking.
+     *
+     * @return The mountain points.
+     */
+    public int[] getMountainPoints() {
+        return mountainPoints;
+    }
+
+    /**
+     * Gets the position of a rider in the ranking.
+     *
+     * @param riderId The ID of the rider.
+     * @return The position, or -1 if the rider is not classified.
+     */
+    public int positionOf(int riderId) {
+        for (int i = 0; i < riderIds.length; i++) {
+            if (riderIds[i] == riderId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
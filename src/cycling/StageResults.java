@@ -0,0 +1,412 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Columnar block holding every result registered in a single stage.
+ * <p>
+ * Each result is one row: a rider ID plus one long column per checkpoint time
+ * (start, every intermediate checkpoint, finish), stored as nanoseconds since
+ * midnight, and one more column caching the elapsed time, i.e., finish minus
+ * start, which is computed once when the result is added. Rows are kept
+ * dense, so deleting a result moves the last row into the freed slot and
+ * ranking code can scan the columns sequentially.
+ * <p>
+ * The time columns live in a single buffer, one column after the other. The
+ * buffer is either on the heap or, for large archives, allocated off-heap so
+ * that it is neither scanned nor copied by the garbage collector, together
+ * with the primitive index from rider IDs to rows; only the rider IDs stay on
+ * the heap. Off-heap memory is released when the block itself is collected.
+ * <p>
+ * When serialised, each row is written as its rider ID, its start time and
+ * the gaps between consecutive checkpoint times, all variable-length
+ * encoded and the times in the coarsest unit holding them exactly, so a row
+ * recorded to the second takes two or three bytes per time. The elapsed time
+ * column and the row index are not written; they are rebuilt when the block
+ * is read.
+ */
+public class StageResults implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number of nanoseconds in a day.
+     */
+    public static final long NANOS_PER_DAY = 86_400_000_000_000L;
+
+    private int stageId;
+    private int columnCount;
+    private int size;
+    private boolean offHeap;
+    private transient int[] riderIds;
+    private transient LongBuffer times;
+    private transient RiderRowIndex rowIndex;
+
+    /**
+     * Constructs an empty result block for a stage, with its times on the heap.
+     *
+     * @param stageId The ID of the stage.
+     * @param columnCount The number of times recorded per rider, i.e., the number
+     *                    of checkpoints in the stage plus the start and finish.
+     */
+    public StageResults(int stageId, int columnCount) {
+        this(stageId, columnCount, false);
+    }
+
+    /**
+     * Constructs an empty result block for a stage.
+     *
+     * @param stageId The ID of the stage.
+     * @param columnCount The number of times recorded per rider, i.e., the number
+     *                    of checkpoints in the stage plus the start and finish.
+     * @param offHeap True to store the times outside the Java heap.
+     */
+    public StageResults(int stageId, int columnCount, boolean offHeap) {
+        this.stageId = stageId;
+        this.columnCount = columnCount;
+        this.offHeap = offHeap;
+        this.riderIds = new int[INITIAL_CAPACITY];
+        this.times = allocate(INITIAL_CAPACITY);
+        this.rowIndex = new RiderRowIndex(INITIAL_CAPACITY, offHeap);
+    }
+
+    /**
+     * Gets the ID of the stage.
+     *
+     * @return The stage ID.
+     */
+    public int getStageId() {
+        return stageId;
+    }
+
+    /**
+     * Gets the number of times recorded per rider.
+     *
+     * @return The number of time columns.
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Gets the number of results in the block.
+     *
+     * @return The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the times of the block are stored outside the Java heap.
+     *
+     * @return True if the times are off-heap.
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Moves the times and the row index of the block on or off the heap.
+     *
+     * @param offHeap True to store the times outside the Java heap.
+     */
+    public void setOffHeap(boolean offHeap) {
+        if (this.offHeap != offHeap) {
+            this.offHeap = offHeap;
+            times = copyTimes(riderIds.length);
+            rowIndex.setOffHeap(offHeap);
+        }
+    }
+
+    /**
+     * Checks if the block holds a result for the rider.
+     *
+     * @param riderId The ID of the rider.
+     * @return True if the rider has a result, false otherwise.
+     */
+    public boolean contains(int riderId) {
+        return rowIndex.get(riderId) >= 0;
+    }
+
+    /**
+     * Gets the row holding the result of a rider.
+     *
+     * @param riderId The ID of the rider.
+     * @return The row index, or -1 if the rider has no result.
+     */
+    public int indexOf(int riderId) {
+        return rowIndex.get(riderId);
+    }
+
+    /**
+     * Appends the result of a rider to the block.
+     *
+     * @param riderId The ID of the rider.
+     * @param checkpointTimes The times at which the rider reached each checkpoint,
+     *                        including the start and finish times.
+     */
+    public void add(int riderId, LocalTime[] checkpointTimes) {
+        long[] nanos = new long[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            nanos[c] = toNanos(checkpointTimes[c]);
+        }
+        add(riderId, nanos);
+    }
+
+    /**
+     * Appends the result of a rider to the block.
+     *
+     * @param riderId The ID of the rider.
+     * @param checkpointTimes The times at which the rider reached each checkpoint,
+     *                        including the start and finish times, in nanoseconds
+     *                        since midnight.
+     */
+    public void add(int riderId, long[] checkpointTimes) {
+        if (size == riderIds.length) {
+            int capacity = riderIds.length * 2;
+            times = copyTimes(capacity);
+            riderIds = Arrays.copyOf(riderIds, capacity);
+        }
+        riderIds[size] = riderId;
+        for (int c = 0; c < columnCount; c++) {
+            times.put(slot(size, c), checkpointTimes[c]);
+        }
+        times.put(slot(size, columnCount), elapsed(checkpointTimes[0], checkpointTimes[columnCount - 1]));
+        rowIndex.put(riderId, size);
+        size++;
+    }
+
+    /**
+     * Removes the result of a rider, moving the last row into its slot.
+     *
+     * @param riderId The ID of the rider.
+     * @return True if a result was removed, false if the rider had none.
+     */
+    public boolean remove(int riderId) {
+        int row = rowIndex.remove(riderId);
+        if (row < 0) {
+            return false;
+        }
+        int last = --size;
+        if (row != last) {
+            riderIds[row] = riderIds[last];
+            for (int c = 0; c <= columnCount; c++) {
+                times.put(slot(row, c), times.get(slot(last, c)));
+            }
+            rowIndex.put(riderIds[row], row);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the rider ID stored in a row.
+     *
+     * @param row The row index.
+     * @return The rider ID.
+     */
+    public int getRiderId(int row) {
+        return riderIds[row];
+    }
+
+    /**
+     * Gets a single time stored in the block.
+     *
+     * @param row The row index.
+     * @param column The time column, 0 being the start and the last being the finish.
+     * @return The time in nanoseconds since midnight.
+     */
+    public long getTime(int row, int column) {
+        return times.get(slot(row, column));
+    }
+
+    /**
+     * Gets the elapsed time of a row, i.e., finish minus start wrapped around
+     * midnight, as cached when the result was added.
+     *
+     * @param row The row index.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedTime(int row) {
+        return times.get(slot(row, columnCount));
+    }
+
+    /**
+     * Gets the checkpoint times of a row as LocalTime values.
+     *
+     * @param row The row index.
+     * @return An array of checkpoint times, including the start and finish times.
+     */
+    public LocalTime[] getCheckpointTimes(int row) {
+        LocalTime[] checkpointTimes = new LocalTime[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            checkpointTimes[c] = toLocalTime(times.get(slot(row, c)));
+        }
+        return checkpointTimes;
+    }
+
+    /**
+     * Gets the rows sorted by elapsed time, riders with equal times in order
+     * of rider ID.
+     *
+     * @return The row indices, fastest first.
+     */
+    public int[] rankedRows() {
+        return rankedRows(null);
+    }
+
+    /**
+     * Gets the rows sorted by elapsed time, splitting large blocks across a pool.
+     *
+     * @param pool The pool to sort on, or null to sort in the calling thread.
+     * @return The row indices, fastest first.
+     */
+    public int[] rankedRows(ForkJoinPool pool) {
+        return RankingSort.rank(column(columnCount), riderIds, size, pool);
+    }
+
+    /**
+     * Gets the rows sorted by the time riders took from their start to a
+     * checkpoint, wrapped around midnight like the elapsed time, riders with
+     * equal times in order of rider ID.
+     *
+     * @param column The time column of the checkpoint.
+     * @return The row indices, first to pass first.
+     */
+    public int[] rowsByPassage(int column) {
+        return rowsByPassage(column, null);
+    }
+
+    /**
+     * Gets the rows sorted by the time riders took from their start to a
+     * checkpoint, splitting large blocks across a pool.
+     *
+     * @param column The time column of the checkpoint.
+     * @param pool The pool to sort on, or null to sort in the calling thread.
+     * @return The row indices, first to pass first.
+     */
+    public int[] rowsByPassage(int column, ForkJoinPool pool) {
+        long[] offsets = new long[size];
+        for (int row = 0; row < size; row++) {
+            offsets[row] = elapsed(times.get(slot(row, 0)), times.get(slot(row, column)));
+        }
+        return RankingSort.rank(offsets, riderIds, size, pool);
+    }
+
+    /**
+     * Copies the used part of a column out of the buffer.
+     */
+    private long[] column(int column) {
+        long[] values = new long[size];
+        times.get(slot(0, column), values);
+        return values;
+    }
+
+    /**
+     * Gets the position of a time in the buffer; each column holds as many
+     * slots as there are rider IDs.
+     */
+    private int slot(int row, int column) {
+        return column * riderIds.length + row;
+    }
+
+    /**
+     * Allocates an empty time buffer, on or off the heap.
+     */
+    private LongBuffer allocate(int capacity) {
+        int bytes = capacity * (columnCount + 1) * Long.BYTES;
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes);
+        return buffer.order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /**
+     * Copies the used part of every column into a new buffer of the given
+     * capacity. Must be called before the rider IDs are resized.
+     */
+    private LongBuffer copyTimes(int capacity) {
+        LongBuffer copy = allocate(capacity);
+        for (int c = 0; c <= columnCount; c++) {
+            copy.put(c * capacity, times, slot(0, c), size);
+        }
+        return copy;
+    }
+
+    /**
+     * Writes the rows in their delta-encoded form after the fixed fields.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int row = 0; row < size; row++) {
+            VarInts.writeUnsigned(out, riderIds[row]);
+            long previous = 0;
+            for (int c = 0; c < columnCount; c++) {
+                long time = times.get(slot(row, c));
+                VarInts.writeGap(out, time - previous);
+                previous = time;
+            }
+        }
+    }
+
+    /**
+     * Decodes the rows into a buffer allocated on or off the heap as the block
+     * was when it was written, and rebuilds the row index.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        riderIds = new int[Math.max(INITIAL_CAPACITY, size)];
+        times = allocate(riderIds.length);
+        rowIndex = new RiderRowIndex(size, offHeap);
+        for (int row = 0; row < size; row++) {
+            riderIds[row] = (int) VarInts.readUnsigned(in);
+            long time = 0;
+            for (int c = 0; c < columnCount; c++) {
+                time += VarInts.readGap(in);
+                times.put(slot(row, c), time);
+            }
+            times.put(slot(row, columnCount), elapsed(times.get(slot(row, 0)), time));
+            rowIndex.put(riderIds[row], row);
+        }
+    }
+
+    /**
+     * Computes the time between a start and a finish, wrapping around midnight
+     * when the finish is earlier in the day than the start.
+     *
+     * @param start The start time in nanoseconds since midnight.
+     * @param finish The finish time in nanoseconds since midnight.
+     * @return The elapsed time in nanoseconds, less than a day.
+     */
+    public static long elapsed(long start, long finish) {
+        return Math.floorMod(finish - start, NANOS_PER_DAY);
+    }
+
+    /**
+     * Converts a time of day to nanoseconds since midnight.
+     *
+     * @param time The time of day.
+     * @return The nanoseconds since midnight.
+     */
+    public static long toNanos(LocalTime time) {
+        return time.toNanoOfDay();
+    }
+
+    /**
+     * Converts nanoseconds since midnight to a time of day.
+     *
+     * @param nanos The nanoseconds since midnight.
+     * @return The time of day.
+     */
+    public static LocalTime toLocalTime(long nanos) {
+        return LocalTime.ofNanoOfDay(nanos);
+    }
+}
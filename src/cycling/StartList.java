@@ -0,0 +1,99 @@
+package cycling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builder of a start list, i.e., teams together with their riders, imported
+ * into a portal in one call with
+ * {@link CyclingPortalImpl#importStartList(StartList)}.
+ * <p>
+ * Riders are added to the team added last:
+ *
+ * <pre>
+ * StartList startList = new StartList()
+ *         .addTeam("TeamA", "description")
+ *         .addRider("Rider One", 1995)
+ *         .addRider("Rider Two", 1998)
+ *         .addTeam("TeamB", "description")
+ *         .addRider("Rider Three", 2000);
+ * </pre>
+ */
+public class StartList {
+
+    private final List<TeamEntry> teams = new ArrayList<>();
+    private int riderCount;
+
+    /**
+     * Adds a team to the start list.
+     *
+     * @param name The name of the team.
+     * @param description The description of the team.
+     * @return This start list.
+     */
+    public StartList addTeam(String name, String description) {
+        teams.add(new TeamEntry(name, description));
+        return this;
+    }
+
+    /**
+     * Adds a rider to the team added last.
+     *
+     * @param name The name of the rider.
+     * @param yearOfBirth The year of birth of the rider.
+     * @return This start list.
+     * @throws IllegalStateException If no team has been added yet.
+     */
+    public StartList addRider(String name, int yearOfBirth) {
+        if (teams.isEmpty()) {
+            throw new IllegalStateException("A team must be added before its riders");
+        }
+        TeamEntry team = teams.get(teams.size() - 1);
+        team.riderNames.add(name);
+        team.yearsOfBirth.add(yearOfBirth);
+        riderCount++;
+        return this;
+    }
+
+    /**
+     * Gets the number of teams in the start list.
+     *
+     * @return The number of teams.
+     */
+    public int getTeamCount() {
+        return teams.size();
+    }
+
+    /**
+     * Gets the number of riders in the start list, across all teams.
+     *
+     * @return The number of riders.
+     */
+    public int getRiderCount() {
+        return riderCount;
+    }
+
+    /**
+     * Gets the teams of the start list, in the order they were added.
+     *
+     * @return The teams.
+     */
+    List<TeamEntry> getTeams() {
+        return teams;
+    }
+
+    /**
+     * A team of the start list with its riders.
+     */
+    static class TeamEntry {
+        final String name;
+        final String description;
+        final List<String> riderNames = new ArrayList<>();
+        final List<Integer> yearsOfBirth = new ArrayList<>();
+
+        TeamEntry(String name, String description) {
+            this.name = name;
+            this.description = description;
+        }
+    }
+}
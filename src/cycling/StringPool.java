@@ -0,0 +1,69 @@
+package cycling;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Pool of canonical strings for the names and descriptions of entities.
+ * <p>
+ * Imported data repeats the same team, race and stage descriptions many
+ * times; interning them keeps a single copy of each in memory, and since a
+ * snapshot writes each distinct string object once, it also shrinks the saved
+ * portal. A pool is safe to share between portals used by different threads.
+ * <p>
+ * The pool only holds its strings weakly: once no entity of any portal
+ * refers to a string any more, because the entities were removed or their
+ * portal was unloaded, the string is released by the garbage collector and
+ * dropped from the pool. A deserialised pool starts empty.
+ */
+public class StringPool implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private transient Map<String, WeakReference<String>> strings = new WeakHashMap<>();
+
+    /**
+     * Gets the canonical instance of a string, adding it to the pool if it is
+     * not there yet.
+     *
+     * @param value The string, possibly null.
+     * @return The pooled string equal to the value, or null if the value is null.
+     */
+    public synchronized String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        WeakReference<String> reference = strings.get(value);
+        String pooled = reference == null ? null : reference.get();
+        if (pooled == null) {
+            strings.put(value, new WeakReference<>(value));
+            pooled = value;
+        }
+        return pooled;
+    }
+
+    /**
+     * Gets the number of distinct strings in the pool, not counting strings
+     * already released.
+     *
+     * @return The number of pooled strings.
+     */
+    public synchronized int size() {
+        return strings.size();
+    }
+
+    /**
+     * Drops every pooled string. Strings already handed out stay valid.
+     */
+    public synchronized void clear() {
+        strings.clear();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        strings = new WeakHashMap<>();
+    }
+}
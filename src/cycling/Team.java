@@ -13,7 +13,7 @@ public class Team implements Serializable {
     private int id;
     private String name;
     private String description;
-    private List<Rider> riders;
+    private ArrayList<Rider> riders;
 
     /**
      * Constructs a new Team.
@@ -29,6 +29,18 @@ public class Team implements Serializable {
         this.riders = new ArrayList<>();
     }
 
+    /**
+     * Constructs a new Team whose name and description are taken from a pool.
+     * 
+     * @param id The unique ID of the team.
+     * @param name The name of the team.
+     * @param description The description of the team.
+     * @param pool The pool of shared strings.
+     */
+    public Team(int id, String name, String description, StringPool pool) {
+        this(id, pool.intern(name), pool.intern(description));
+    }
+
     /**
      * Gets the unique identifier of the team.
      * 
@@ -65,6 +77,16 @@ public class Team implements Serializable {
         return riders;
     }
 
+    /**
+     * Grows the list of riders so it can hold a number of riders without
+     * being resized.
+     * 
+     * @param capacity The number of riders the team is expected to hold.
+     */
+    public void ensureRiderCapacity(int capacity) {
+        riders.ensureCapacity(capacity);
+    }
+
     /**
      * Adds a rider to the team.
      * 
@@ -73,4 +95,14 @@ public class Team implements Serializable {
     public void addRider(Rider rider) {
         riders.add(rider);
     }
+
+    /**
+     * Replaces the name and description of the team by their pooled instances.
+     * 
+     * @param pool The pool of shared strings.
+     */
+    public void internStrings(StringPool pool) {
+        name = pool.intern(name);
+        description = pool.intern(description);
+    }
 }
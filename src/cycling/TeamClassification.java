@@ -0,0 +1,64 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * A team time classification: teams ranked by the summed elapsed times of
+ * their three best riders, over a stage or over all stages of a race. Teams
+ * with equal times are ranked by team ID.
+ */
+public class TeamClassification implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int[] teamIds;
+    private long[] teamTimes;
+
+    private TeamClassification(int[] teamIds, long[] teamTimes) {
+        this.teamIds = teamIds;
+        this.teamTimes = teamTimes;
+    }
+
+    /**
+     * Ranks teams by their times.
+     *
+     * @param times The time of each team in nanoseconds, keyed by team ID.
+     * @return The team classification.
+     */
+    public static TeamClassification rank(Map<Integer, Long> times) {
+        int[] ids = new int[times.size()];
+        long[] values = new long[times.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Long> entry : times.entrySet()) {
+            ids[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        int[] order = RankingSort.rank(values, ids);
+
+        int[] teamIds = new int[order.length];
+        long[] teamTimes = new long[order.length];
+        for (i = 0; i < order.length; i++) {
+            teamIds[i] = ids[order[i]];
+            teamTimes[i] = values[order[i]];
+        }
+        return new TeamClassification(teamIds, teamTimes);
+    }
+
+    /**
+     * Gets the team IDs, fastest team first.
+     *
+     * @return The ranked team IDs.
+     */
+    public int[] getTeamIds() {
+        return teamIds;
+    }
+
+    /**
+     * Gets the team times in nanoseconds, aligned with the ranking.
+     *
+     * @return The team times.
+     */
+    public long[] getTeamTimes() {
+        return teamTimes;
+    }
+}
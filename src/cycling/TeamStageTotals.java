@@ -0,0 +1,151 @@
+package cycling;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Incrementally maintained team times of a single stage. For each team the
+ * three best elapsed times of its riders are kept, so registering a result
+ * is constant time and the team time is available without a rescan.
+ */
+public class TeamStageTotals implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of riders whose times make up the team time.
+     */
+    public static final int COUNTED_RIDERS = 3;
+
+    private static final long EMPTY = Long.MAX_VALUE;
+
+    private int stageId;
+    private Map<Integer, long[]> bestTimes = new HashMap<>();
+
+    /**
+     * Constructs empty totals for a stage.
+     *
+     * @param stageId The ID of the stage.
+     */
+    public TeamStageTotals(int stageId) {
+        this.stageId = stageId;
+    }
+
+    /**
+     * Gets the ID of the stage.
+     *
+     * @return The stage ID.
+     */
+    public int getStageId() {
+        return stageId;
+    }
+
+    /**
+     * Adds the elapsed time of a rider to their team.
+     *
+     * @param teamId The ID of the rider's team.
+     * @param elapsedTime The elapsed time of the rider in nanoseconds.
+     */
+    public void add(int teamId, long elapsedTime) {
+        long[] best = bestTimes.computeIfAbsent(teamId, id -> emptyBest());
+        insert(best, elapsedTime);
+    }
+
+    /**
+     * Removes the elapsed time of a rider from their team. If the time was one
+     * of the counted ones, the team is rebuilt from the stage's result block.
+     *
+     * @param teamId The ID of the rider's team.
+     * @param elapsedTime The elapsed time of the removed result in nanoseconds.
+     * @param results The result block of the stage, without the removed result.
+     * @param riderTeams The team of each rider.
+     */
+    public void remove(int teamId, long elapsedTime, StageResults results, Map<Integer, Integer> riderTeams) {
+        long[] best = bestTimes.get(teamId);
+        if (best == null || elapsedTime > best[COUNTED_RIDERS - 1]) {
+            return;
+        }
+        rebuildTeam(teamId, results, riderTeams);
+    }
+
+    /**
+     * Recomputes the best times of a team from the stage's result block.
+     *
+     * @param teamId The ID of the team.
+     * @param results The result block of the stage.
+     * @param riderTeams The team of each rider.
+     */
+    public void rebuildTeam(int teamId, StageResults results, Map<Integer, Integer> riderTeams) {
+        long[] best = emptyBest();
+        for (int row = 0; row < results.size(); row++) {
+            Integer riderTeam = riderTeams.get(results.getRiderId(row));
+            if (riderTeam != null && riderTeam == teamId) {
+                insert(best, results.getElapsedTime(row));
+            }
+        }
+        if (best[0] == EMPTY) {
+            bestTimes.remove(teamId);
+        } else {
+            bestTimes.put(teamId, best);
+        }
+    }
+
+    /**
+     * Forgets a team.
+     *
+     * @param teamId The ID of the team.
+     */
+    public void removeTeam(int teamId) {
+        bestTimes.remove(teamId);
+    }
+
+    /**
+     * Gets the team time, i.e., the sum of its three best elapsed times.
+     *
+     * @param teamId The ID of the team.
+     * @return The team time in nanoseconds, or -1 if fewer than three of its
+     *         riders have a result.
+     */
+    public long getTeamTime(int teamId) {
+        long[] best = bestTimes.get(teamId);
+        if (best == null || best[COUNTED_RIDERS - 1] == EMPTY) {
+            return -1;
+        }
+        long total = 0;
+        for (long time : best) {
+            total += time;
+        }
+        return total;
+    }
+
+    /**
+     * Gets the teams with at least one rider result in the stage.
+     *
+     * @return The team IDs.
+     */
+    public int[] getTeamIds() {
+        return bestTimes.keySet().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static long[] emptyBest() {
+        long[] best = new long[COUNTED_RIDERS];
+        Arrays.fill(best, EMPTY);
+        return best;
+    }
+
+    /**
+     * Inserts a time into a sorted array of best times, dropping the slowest.
+     */
+    private static void insert(long[] best, long time) {
+        int i = COUNTED_RIDERS - 1;
+        if (time >= best[i]) {
+            return;
+        }
+        while (i > 0 && best[i - 1] > time) {
+            best[i] = best[i - 1];
+            i--;
+        }
+        best[i] = time;
+    }
+}
@@ -0,0 +1,233 @@
+package cycling;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+
+/**
+ * Variable-length encoding of integers used by the compact serialised forms
+ * of result data. Values are written seven bits per byte, least significant
+ * group first, so small values take fewer bytes than their eight. Signed
+ * values are zigzag-encoded first so small negative values stay short as
+ * well.
+ * <p>
+ * Times are nanoseconds, so even a short gap between two checkpoints is a
+ * large number: twenty minutes take six bytes. Gaps are therefore written in
+ * the coarsest of seconds, milliseconds or nanoseconds that holds them
+ * exactly, the unit being tagged in the two lowest bits. Times recorded to
+ * the second, as most timing systems do, take two or three bytes per gap,
+ * while nanosecond times keep their precision.
+ */
+public final class VarInts {
+
+    /**
+     * The largest number of bytes a value can take.
+     */
+    public static final int MAX_LENGTH = 10;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private static final int SECONDS = 0;
+    private static final int MILLIS = 1;
+    private static final int NANOS = 2;
+
+    private VarInts() {
+    }
+
+    /**
+     * Writes a non-negative value.
+     *
+     * @param out The stream to write to.
+     * @param value The value, treated as unsigned.
+     * @throws IOException If the stream cannot be written.
+     */
+    public static void writeUnsigned(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a value written by {@link #writeUnsigned(DataOutput, long)}.
+     *
+     * @param in The stream to read from.
+     * @return The value.
+     * @throws IOException If the stream cannot be read or holds an invalid value.
+     */
+    public static long readUnsigned(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Variable-length value is too long");
+    }
+
+    /**
+     * Writes a signed value.
+     *
+     * @param out The stream to write to.
+     * @param value The value.
+     * @throws IOException If the stream cannot be written.
+     */
+    public static void writeSigned(DataOutput out, long value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads a value written by {@link #writeSigned(DataOutput, long)}.
+     *
+     * @param in The stream to read from.
+     * @return The value.
+     * @throws IOException If the stream cannot be read or holds an invalid value.
+     */
+    public static long readSigned(DataInput in) throws IOException {
+        long encoded = readUnsigned(in);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    /**
+     * Puts a non-negative value at the position of a buffer.
+     *
+     * @param buffer The buffer, with at least {@link #MAX_LENGTH} bytes remaining.
+     * @param value The value, treated as unsigned.
+     */
+    public static void putUnsigned(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Gets a value put by {@link #putUnsigned(ByteBuffer, long)} at the
+     * position of a buffer.
+     *
+     * @param buffer The buffer.
+     * @return The value.
+     */
+    public static long getUnsigned(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Puts a signed value at the position of a buffer.
+     *
+     * @param buffer The buffer, with at least {@link #MAX_LENGTH} bytes remaining.
+     * @param value The value.
+     */
+    public static void putSigned(ByteBuffer buffer, long value) {
+        putUnsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Gets a value put by {@link #putSigned(ByteBuffer, long)} at the position
+     * of a buffer.
+     *
+     * @param buffer The buffer.
+     * @return The value.
+     */
+    public static long getSigned(ByteBuffer buffer) {
+        long encoded = getUnsigned(buffer);
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+
+    /**
+     * Writes a gap between two times in the coarsest unit holding it exactly.
+     *
+     * @param out The stream to write to.
+     * @param gap The gap in nanoseconds, less than a day either way.
+     * @throws IOException If the stream cannot be written.
+     */
+    public static void writeGap(DataOutput out, long gap) throws IOException {
+        writeUnsigned(out, encodeGap(gap));
+    }
+
+    /**
+     * Reads a gap written by {@link #writeGap(DataOutput, long)}.
+     *
+     * @param in The stream to read from.
+     * @return The gap in nanoseconds.
+     * @throws IOException If the stream cannot be read or holds an invalid value.
+     */
+    public static long readGap(DataInput in) throws IOException {
+        long gap = decodeGap(readUnsigned(in));
+        if (gap == Long.MIN_VALUE) {
+            throw new StreamCorruptedException("Invalid time unit");
+        }
+        return gap;
+    }
+
+    /**
+     * Puts a gap between two times at the position of a buffer in the
+     * coarsest unit holding it exactly.
+     *
+     * @param buffer The buffer, with at least {@link #MAX_LENGTH} bytes remaining.
+     * @param gap The gap in nanoseconds, less than a day either way.
+     */
+    public static void putGap(ByteBuffer buffer, long gap) {
+        putUnsigned(buffer, encodeGap(gap));
+    }
+
+    /**
+     * Gets a gap put by {@link #putGap(ByteBuffer, long)} at the position of a
+     * buffer.
+     *
+     * @param buffer The buffer.
+     * @return The gap in nanoseconds.
+     */
+    public static long getGap(ByteBuffer buffer) {
+        return decodeGap(getUnsigned(buffer));
+    }
+
+    private static long encodeGap(long gap) {
+        if (gap % NANOS_PER_SECOND == 0) {
+            return zigzag(gap / NANOS_PER_SECOND) << 2 | SECONDS;
+        }
+        if (gap % NANOS_PER_MILLI == 0) {
+            return zigzag(gap / NANOS_PER_MILLI) << 2 | MILLIS;
+        }
+        return zigzag(gap) << 2 | NANOS;
+    }
+
+    /**
+     * Decodes a tagged gap, or returns Long.MIN_VALUE if the unit is invalid.
+     */
+    private static long decodeGap(long encoded) {
+        long value = unzigzag(encoded >>> 2);
+        switch ((int) (encoded & 3)) {
+            case SECONDS:
+                return value * NANOS_PER_SECOND;
+            case MILLIS:
+                return value * NANOS_PER_MILLI;
+            case NANOS:
+                return value;
+            default:
+                return Long.MIN_VALUE;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long encoded) {
+        return (encoded >>> 1) ^ -(encoded & 1);
+    }
+}